@@ -0,0 +1,158 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: VectorMatchingKernel</p>
+ *
+ * <p>Description: Matching kernels vectorised with the Vector API (module jdk.incubator.vector, it must be added
+ * with --add-modules jdk.incubator.vector both to compile and to run this class, see MatchingKernel). The rules of a range are processed in groups of as many rules as lanes
+ * of the preferred species (8 or 16 for AVX2 or AVX-512): for each variable, the membership degrees of the labels
+ * of the rules are gathered into a vector and combined with the t-norm. Each lane computes the same operations as
+ * the scalar kernels, so the result is the same. Lists of rules are processed in the same way, gathering first the
+ * labels of the rules of each group (by rule id) from the antecedents stored by variable.
+ * This class is only loaded through MatchingKernel.getKernel.</p>
+ *
+ * @version 1.0
+ */
+public class VectorMatchingKernel {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INDEX = VectorSpecies.of(int.class, SPECIES.vectorShape()); // same lanes
+
+	/**
+	 * Product t-norm
+	 */
+	static class Product extends MatchingKernel.Product {
+
+		public void compute(float[][] membership, int[][] columns, int[] rules, int from, int to, float[] degrees, int[] labels){
+			int lanes = SPECIES.length();
+			int c = from;
+			for (; c + lanes <= to; c += lanes){
+				FloatVector matching = FloatVector.broadcast(SPECIES, 1.0f);
+				for (int j = 0; j < columns.length; j++){
+					IntVector.fromArray(INDEX, columns[j], 0, rules, c).intoArray(labels, 0);
+					matching = matching.mul(FloatVector.fromArray(SPECIES, membership[j], 0, labels, 0));
+				}
+				matching.intoArray(degrees, c);
+			}
+			super.compute(membership, columns, rules, c, to, degrees, labels); // remaining rules
+		}
+
+		public void compute(float[][] membership, int[][] columns, int fromRule, int toRule, float[] degrees){
+			int lanes = SPECIES.length();
+			int i = fromRule;
+			for (; i + lanes <= toRule; i += lanes){
+				FloatVector matching = FloatVector.broadcast(SPECIES, 1.0f);
+				for (int j = 0; j < columns.length; j++)
+					matching = matching.mul(FloatVector.fromArray(SPECIES, membership[j], 0, columns[j], i));
+				matching.intoArray(degrees, i - fromRule);
+			}
+			for (; i < toRule; i++){ // remaining rules
+				float matching = 1.0f;
+				for (int j = 0; j < columns.length; j++)
+					matching *= membership[j][columns[j][i]];
+				degrees[i - fromRule] = matching;
+			}
+		}
+
+		public int getLanes(){
+			return SPECIES.length();
+		}
+
+		public String toString(){
+			return "product ("+SPECIES.length()+" lanes)";
+		}
+	}
+
+	/**
+	 * Minimum t-norm
+	 */
+	static class Minimum extends MatchingKernel.Minimum {
+
+		public void compute(float[][] membership, int[][] columns, int[] rules, int from, int to, float[] degrees, int[] labels){
+			int lanes = SPECIES.length();
+			int c = from;
+			for (; c + lanes <= to; c += lanes){
+				FloatVector matching = FloatVector.broadcast(SPECIES, 1.0f);
+				for (int j = 0; j < columns.length; j++){
+					IntVector.fromArray(INDEX, columns[j], 0, rules, c).intoArray(labels, 0);
+					matching = matching.min(FloatVector.fromArray(SPECIES, membership[j], 0, labels, 0));
+				}
+				matching.intoArray(degrees, c);
+			}
+			super.compute(membership, columns, rules, c, to, degrees, labels); // remaining rules
+		}
+
+		public void compute(float[][] membership, int[][] columns, int fromRule, int toRule, float[] degrees){
+			int lanes = SPECIES.length();
+			int i = fromRule;
+			for (; i + lanes <= toRule; i += lanes){
+				FloatVector matching = FloatVector.broadcast(SPECIES, 1.0f);
+				for (int j = 0; j < columns.length; j++)
+					matching = matching.min(FloatVector.fromArray(SPECIES, membership[j], 0, columns[j], i));
+				matching.intoArray(degrees, i - fromRule);
+			}
+			for (; i < toRule; i++){ // remaining rules
+				float matching = 1.0f;
+				for (int j = 0; j < columns.length; j++)
+					matching = Math.min(matching, membership[j][columns[j][i]]);
+				degrees[i - fromRule] = matching;
+			}
+		}
+
+		public int getLanes(){
+			return SPECIES.length();
+		}
+
+		public String toString(){
+			return "minimum ("+SPECIES.length()+" lanes)";
+		}
+	}
+
+	/**
+	 * It obtains the vectorised kernel of a t-norm
+	 * @param tNorm the t-norm (Fuzzy_Chi.MINIMUM or Fuzzy_Chi.PRODUCT)
+	 * @return the vectorised kernel, or null if the vectors of the platform are too short to be worth it
+	 */
+	public static MatchingKernel getKernel(int tNorm){
+		if (SPECIES.length() < 4)
+			return null;
+		if (tNorm == Fuzzy_Chi.MINIMUM)
+			return new Minimum();
+		else
+			return new Product();
+	}
+
+}
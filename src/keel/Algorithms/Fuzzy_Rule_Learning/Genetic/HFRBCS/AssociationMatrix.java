@@ -0,0 +1,338 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: AssociationMatrix</p>
+ *
+ * <p>Description: Sparse matrix (compressed rows) with the rules that match each training example, used to
+ * evaluate the chromosomes of the genetic algorithm with the winning rule FRM. The rules of each example are
+ * sorted by decreasing association degree (ties by class and rule id), so the winning rule of a given set of
+ * selected rules is the first selected rule of the row. The matrix also keeps the examples matched by each rule
+ * (reverse index), so a chromosome that differs from an evaluated one in a few genes can be evaluated by
+ * re-scoring only the examples matched by those rules. The matrix is only built if it fits in a memory budget.</p>
+ *
+ * @version 1.1
+ */
+public class AssociationMatrix {
+
+	private static final int BYTES_PER_ENTRY = 9; // rule id (int), class (byte) and example (int, reverse index)
+
+	private int numExamples;
+	private int[] start; // the rules of example i are in positions [start[i], start[i+1])
+	private int[] rules; // rule ids
+	private byte[] classes; // class of each rule
+	private byte[] exampleClass; // class of each example
+	private int[] ruleStart; // the examples matched by rule r are in positions [ruleStart[r], ruleStart[r+1])
+	private int[] ruleExamples; // example ids (reverse index)
+
+	/**
+	 * Rows of a range of examples (built by a single thread)
+	 */
+	private static class Block {
+		int[] length; // number of rules of each example
+		int[] rules;
+		byte[] classes;
+		int size;
+	}
+
+	private AssociationMatrix(){
+	}
+
+	/**
+	 * Builds the association matrix of the training set with the rule base of the KB
+	 * @param kb the knowledge base
+	 * @param train the training set
+	 * @param memoryBudget maximum size of the matrix (bytes)
+	 * @return the association matrix, or null if it does not fit in the memory budget
+	 */
+	public static AssociationMatrix build(final KnowledgeBase kb, final myDataset train, long memoryBudget){
+		final int nExamples = train.size();
+		long fixed = 5L*nExamples + 4L*kb.size() + 8;
+		if (fixed > memoryBudget)
+			return null;
+		final long maxEntries = Math.min((memoryBudget - fixed) / BYTES_PER_ENTRY, Integer.MAX_VALUE - 8);
+		final AtomicLong numEntries = new AtomicLong();
+		List<Block> blocks;
+		if (kb.getNumThreads() <= 1 || nExamples < 2){
+			blocks = new ArrayList<Block>();
+			blocks.add(buildBlock(kb, train, 0, nExamples, numEntries, maxEntries));
+		}
+		else{
+			int nBlocks = Math.min(4*kb.getNumThreads(), nExamples);
+			List<Callable<Block>> tasks = new ArrayList<Callable<Block>>();
+			for (int b = 0; b < nBlocks; b++){
+				final int from = (int)((long)b*nExamples/nBlocks);
+				final int to = (int)((long)(b+1)*nExamples/nBlocks);
+				tasks.add(new Callable<Block>(){
+					public Block call(){
+						return buildBlock(kb, train, from, to, numEntries, maxEntries);
+					}
+				});
+			}
+			blocks = kb.invokeAll(tasks);
+		}
+		if (numEntries.get() > maxEntries)
+			return null;
+
+		AssociationMatrix matrix = new AssociationMatrix();
+		matrix.numExamples = nExamples;
+		matrix.start = new int[nExamples+1];
+		matrix.rules = new int[(int)numEntries.get()];
+		matrix.classes = new byte[matrix.rules.length];
+		matrix.exampleClass = new byte[nExamples];
+		int example = 0, position = 0;
+		for (Block block : blocks){
+			for (int i = 0; i < block.length.length; i++){
+				matrix.start[example++] = position;
+				position += block.length[i];
+			}
+			System.arraycopy(block.rules, 0, matrix.rules, matrix.start[example-block.length.length], block.size);
+			System.arraycopy(block.classes, 0, matrix.classes, matrix.start[example-block.length.length], block.size);
+		}
+		matrix.start[nExamples] = position;
+		for (int i = 0; i < nExamples; i++)
+			matrix.exampleClass[i] = train.getClass(i);
+
+		// Reverse index (counting sort by rule: the examples of each rule are in ascending order)
+		matrix.ruleStart = new int[kb.size()+1];
+		matrix.ruleExamples = new int[matrix.rules.length];
+		for (int k = 0; k < matrix.rules.length; k++)
+			matrix.ruleStart[matrix.rules[k]+1]++;
+		for (int r = 0; r < kb.size(); r++)
+			matrix.ruleStart[r+1] += matrix.ruleStart[r];
+		int[] next = Arrays.copyOf(matrix.ruleStart, kb.size());
+		for (int i = 0; i < nExamples; i++)
+			for (int k = matrix.start[i]; k < matrix.start[i+1]; k++)
+				matrix.ruleExamples[next[matrix.rules[k]]++] = i;
+		return matrix;
+	}
+
+	/**
+	 * Builds the rows of a range of examples
+	 * @param kb the knowledge base
+	 * @param train the training set
+	 * @param from first example
+	 * @param to last example (not included)
+	 * @param numEntries number of entries of all the blocks (shared)
+	 * @param maxEntries maximum number of entries
+	 * @return the rows of the examples (incomplete if the maximum number of entries is exceeded)
+	 */
+	private static Block buildBlock(KnowledgeBase kb, myDataset train, int from, int to, AtomicLong numEntries, long maxEntries){
+		CompiledModel.Workspace ws = kb.newWorkspace();
+		double[] example = new double[train.getNumberVariables()];
+		int[] ids = new int[kb.size()];
+		float[] degrees = new float[kb.size()];
+		Block block = new Block();
+		block.length = new int[to - from];
+		block.rules = new int[16];
+		block.classes = new byte[16];
+		for (int i = from; i < to && numEntries.get() <= maxEntries; i++){
+			train.getEncodedExample(i, example);
+			int n = kb.computeAssociationDegrees(example, ws, ids, degrees);
+			if (numEntries.addAndGet(n) > maxEntries)
+				break;
+			if (block.size + n > block.rules.length){
+				int capacity = Math.max(2*block.rules.length, block.size + n);
+				block.rules = Arrays.copyOf(block.rules, capacity);
+				block.classes = Arrays.copyOf(block.classes, capacity);
+			}
+			sort(kb, ids, degrees, n);
+			for (int k = 0; k < n; k++){
+				block.rules[block.size + k] = ids[k];
+				block.classes[block.size + k] = kb.getClassIndex(ids[k]);
+			}
+			block.length[i - from] = n;
+			block.size += n;
+		}
+		return block;
+	}
+
+	/**
+	 * Sorts the rules of an example by decreasing association degree, increasing class and increasing rule id
+	 * (insertion sort: the rules are already sorted by id, and there are only a few of them)
+	 * @param kb the knowledge base
+	 * @param ids rule ids (in ascending order)
+	 * @param degrees association degrees
+	 * @param n number of rules
+	 */
+	private static void sort(KnowledgeBase kb, int[] ids, float[] degrees, int n){
+		for (int i = 1; i < n; i++){
+			int id = ids[i];
+			float degree = degrees[i];
+			byte classIndex = kb.getClassIndex(id);
+			int j = i - 1;
+			while (j >= 0 && (degrees[j] < degree || (degrees[j] == degree && kb.getClassIndex(ids[j]) > classIndex))){
+				ids[j+1] = ids[j];
+				degrees[j+1] = degrees[j];
+				j--;
+			}
+			ids[j+1] = id;
+			degrees[j+1] = degree;
+		}
+	}
+
+	/**
+	 * It returns the number of examples of the matrix
+	 * @return the number of examples
+	 */
+	public int size(){
+		return numExamples;
+	}
+
+	/**
+	 * It returns the number of (example, rule) pairs stored in the matrix
+	 * @return the number of entries
+	 */
+	public int getNumEntries(){
+		return rules.length;
+	}
+
+	/**
+	 * It returns the memory used by the matrix
+	 * @return the size of the matrix (bytes)
+	 */
+	public long getMemory(){
+		return (long)BYTES_PER_ENTRY*rules.length + 5L*numExamples + 4L*(ruleStart.length-1) + 8;
+	}
+
+	/**
+	 * It returns the position of the winning rule of an example (the first selected rule of its row)
+	 * @param example the example
+	 * @param selected selected rules (bitset)
+	 * @return the position of the winning rule in the matrix, or -1 if no selected rule matches the example
+	 */
+	public int getWinner(int example, long[] selected){
+		for (int k = start[example]; k < start[example+1]; k++)
+			if ((selected[rules[k] >>> 6] & (1L << rules[k])) != 0)
+				return k;
+		return -1;
+	}
+
+	/**
+	 * It computes the number of examples correctly classified (winning rule FRM) by a set of selected rules
+	 * @param selected selected rules (bitset)
+	 * @param correct output bitset with the examples correctly classified (null if it is not needed)
+	 * @return the number of examples correctly classified
+	 */
+	public int evaluate(long[] selected, long[] correct){
+		int hits = 0;
+		if (correct != null)
+			Arrays.fill(correct, 0L);
+		for (int i = 0; i < numExamples; i++){
+			if (isCorrect(i, selected)){
+				hits++;
+				if (correct != null)
+					correct[i >>> 6] |= 1L << i;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * It computes the number of examples correctly classified (winning rule FRM) by a set of selected rules in
+	 * a subset of the examples
+	 * @param selected selected rules (bitset)
+	 * @param order list of examples
+	 * @param from first position of the list
+	 * @param to last position of the list (not included)
+	 * @param correct bitset where the examples correctly classified are added (null if it is not needed)
+	 * @return the number of examples of the subset correctly classified
+	 */
+	public int evaluate(long[] selected, int[] order, int from, int to, long[] correct){
+		int hits = 0;
+		for (int p = from; p < to; p++){
+			int i = order[p];
+			if (isCorrect(i, selected)){
+				hits++;
+				if (correct != null)
+					correct[i >>> 6] |= 1L << i;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * It computes the number of examples correctly classified by a set of selected rules that differs from an
+	 * evaluated one in a few rules. Only the examples matched by these rules are classified again
+	 * @param selected selected rules (bitset)
+	 * @param flipped rules whose selection differs from the evaluated set
+	 * @param parentCorrect bitset with the examples correctly classified by the evaluated set
+	 * @param parentHits number of examples correctly classified by the evaluated set
+	 * @param correct output bitset with the examples correctly classified by the new set
+	 * @return the number of examples correctly classified
+	 */
+	public int evaluate(long[] selected, int[] flipped, long[] parentCorrect, int parentHits, long[] correct){
+		int hits = parentHits;
+		System.arraycopy(parentCorrect, 0, correct, 0, correct.length);
+		for (int j = 0; j < flipped.length; j++){
+			for (int k = ruleStart[flipped[j]]; k < ruleStart[flipped[j]+1]; k++){
+				int i = ruleExamples[k];
+				boolean wasCorrect = (correct[i >>> 6] & (1L << i)) != 0;
+				if (isCorrect(i, selected) != wasCorrect){
+					correct[i >>> 6] ^= 1L << i;
+					hits += wasCorrect ? -1 : 1;
+				}
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * It returns the number of examples that must be classified again for a delta evaluation
+	 * @param flipped rules whose selection differs from the evaluated set
+	 * @return the number of (example, rule) pairs of the flipped rules
+	 */
+	public long getDeltaCost(int[] flipped){
+		long cost = 0;
+		for (int j = 0; j < flipped.length; j++)
+			cost += ruleStart[flipped[j]+1] - ruleStart[flipped[j]];
+		return cost;
+	}
+
+	/**
+	 * Checks if an example is correctly classified by a set of selected rules
+	 * @param example the example
+	 * @param selected selected rules (bitset)
+	 * @return true if the winning rule has the class of the example (the first class if no rule matches the example)
+	 */
+	private boolean isCorrect(int example, long[] selected){
+		int k = getWinner(example, selected);
+		byte classOut = k < 0 ? 0 : classes[k]; //no matching rule: the first class wins (see FRM_WR)
+		return classOut == exampleClass[example];
+	}
+
+}
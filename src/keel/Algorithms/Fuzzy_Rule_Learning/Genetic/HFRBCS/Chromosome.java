@@ -1,173 +1,280 @@
-package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
-
-import java.util.ArrayList;
-
-import org.core.Randomize;
-
-public class Chromosome implements Comparable{
-	
-	boolean [] individual;
-	double fitness;
-	boolean evaluate;
-	
-	/**
-	 * Default constructor
-	 */
-	public Chromosome(){
-		evaluate = false;
-		individual = new boolean[1];
-		for (int j = 0; j < individual.length; j++){
-			individual[j] = true; 
-		}
-		fitness = 0;
-	}
-	
-	/**
-	 * Constructor with parameters
-	 * @param size length of the chromosome 
-	 * @param value to be assigned to all genes
-	 */
-	public Chromosome(int size, boolean value){
-		evaluate = false;
-		individual = new boolean[size];
-		for (int j = 0; j < individual.length; j++){
-			individual[j] = value; 
-		}
-		fitness = 0;
-	}
-	
-	/**
-	 * Constructor with parameters
-	 * @param size length of the chromosome
-	 */
-	public Chromosome(int size){
-		evaluate = false;
-		individual = new boolean[size];
-		for (int j = 0; j < individual.length; j++){
-			individual[j] = Randomize.Rand() > 0.5; 
-		}
-		fitness = 0;
-	}
-	
-	/**
-	 * Constructor with parameters
-	 * @param size length of the chromosome
-	 * @param pos variable id to set 1 
-	 */
-	public Chromosome(int size, int pos){
-		evaluate = false;
-		individual = new boolean[size];
-		for (int j = 0; j < individual.length; j++){
-			individual[j] = false; 
-		}
-		individual[pos] = true;;
-		fitness = 0;
-	}
-	
-	/**
-	 * Check if the chromosome has been evaluated
-	 * @return true if the chromosome has been evaluated; false otherwise
-	 */
-	public boolean isEvaluated(){
-		return evaluate;
-	}
-	
-	/**
-	 * Set the chromosome as evaluated
-	 */
-	public void evaluated(){
-		evaluate = true;
-	}
-	
-	/**
-	 * Set the fitness value for the chromosome
-	 * @param fitness value of the fitness
-	 */
-	public void setFitness(double fitness){
-		this.fitness = fitness;
-	}
-	
-	/**
-	 * It gets the fitness of the chromosome
-	 * @return the fitness value
-	 */
-	public double getFitness(){
-		return fitness;
-	}
-	
-	/**
-	 * It computes the hamming distance between chromosomes
-	 * @param c the other chromosome
-	 * @return the number of different genes between chromosomes
-	 */
-	public int hamming(Chromosome c){
-		int dist = 0;
-		for (int i=0; i<individual.length; i++) if (c.individual[i] != individual[i]) dist++;
-				
-		return dist;
-	}
-	
-		
-	/**
-	 * It creates a complete copy of the chromosome
-	 */
-	public Chromosome clone(){
-		Chromosome c = new Chromosome();
-		c.individual = individual.clone();
-		c.fitness = this.fitness;
-		c.evaluate = false;
-		return c;
-	}
-	
-	/**
-	 * It gets the whole chromosome representation
-	 * @return the genotype of the chromosome
-	 */
-	public boolean [] getChromosome(){
-		return this.individual;
-	}
-	
-	/**
-	 * Obtains an array with the positions (indices) of the genes that are different between chromosomes
-	 * @param c the other chromosome
-	 * @return an ArrayList with the indices
-	 */
-	public ArrayList <Integer> differ (Chromosome c){
-		ArrayList <Integer> differ = new ArrayList <Integer>();
-		boolean [] cChrom = c.getChromosome();
-		for (int i = 0; i < individual.length; i++){
-			if (individual[i] != cChrom[i]){
-				differ.add(i);
-			}
-		}
-		return differ;
-	}
-	
-	/**
-	 * It changes the value of the genes stated in positions
-	 * @param positions
-	 */
-	public void flip(int [] positions){
-		for (int i = 0; i < positions.length; i++){
-			individual[positions[i]] = !individual[positions[i]];
-		}
-	}
-		
-	/**
-	 * Compares the fitness of two Chrmosomes for the ordering procedure
-	 * @param a Object a Chromosome
-	 * @return int -1 if the current Chrosome is worst than the one that is compared, 1 for the contrary case and 0
-	 * if they are equal.
-	 */
-	public int compareTo(Object a) {
-		if ( ( (Chromosome) a).fitness < this.fitness) {
-			return -1;
-		}
-		if ( ( (Chromosome) a).fitness > this.fitness) {
-			return 1;
-		}
-		return 0;
-	}
-
-
-}
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import org.core.RandomStream;
+
+public class Chromosome implements Comparable<Chromosome>{
+	
+	long [] individual; //genes packed in 64-bit words (gene i is bit i%64 of word i/64)
+	int size; //number of genes
+	double fitness;
+	boolean evaluate;
+	long [] correct; //examples correctly classified (null if they are not stored)
+	int hits; //number of examples correctly classified
+	Chromosome parent; //chromosome this one was obtained from (crossover), until it is evaluated
+	int [] flipped; //genes that differ from the parent
+	
+	/**
+	 * Default constructor
+	 */
+	public Chromosome(){
+		this(1, true);
+	}
+	
+	/**
+	 * Constructor with parameters
+	 * @param size length of the chromosome 
+	 * @param value to be assigned to all genes
+	 */
+	public Chromosome(int size, boolean value){
+		evaluate = false;
+		this.size = size;
+		individual = new long[(size+63) >>> 6];
+		for (int j = 0; j < size; j++){
+			set(j, value); 
+		}
+		fitness = 0;
+	}
+	
+	/**
+	 * Constructor with parameters
+	 * @param size length of the chromosome
+	 * @param random random number generator
+	 */
+	public Chromosome(int size, RandomStream random){
+		evaluate = false;
+		this.size = size;
+		individual = new long[(size+63) >>> 6];
+		for (int j = 0; j < size; j++){
+			set(j, random.Rand() > 0.5); 
+		}
+		fitness = 0;
+	}
+	
+	/**
+	 * Constructor with parameters
+	 * @param size length of the chromosome
+	 * @param pos variable id to set 1 
+	 */
+	public Chromosome(int size, int pos){
+		evaluate = false;
+		this.size = size;
+		individual = new long[(size+63) >>> 6];
+		set(pos, true);
+		fitness = 0;
+	}
+
+	/**
+	 * It sets the value of a gene
+	 * @param pos the position of the gene
+	 * @param value the new value
+	 */
+	private void set(int pos, boolean value){
+		if (value)
+			individual[pos >>> 6] |= 1L << pos;
+		else
+			individual[pos >>> 6] &= ~(1L << pos);
+	}
+
+	/**
+	 * It gets the value of a gene
+	 * @param pos the position of the gene
+	 * @return the value of the gene
+	 */
+	public boolean get(int pos){
+		return (individual[pos >>> 6] & (1L << pos)) != 0;
+	}
+	
+	/**
+	 * Check if the chromosome has been evaluated
+	 * @return true if the chromosome has been evaluated; false otherwise
+	 */
+	public boolean isEvaluated(){
+		return evaluate;
+	}
+	
+	/**
+	 * Set the chromosome as evaluated
+	 */
+	public void evaluated(){
+		evaluate = true;
+	}
+	
+	/**
+	 * Set the fitness value for the chromosome
+	 * @param fitness value of the fitness
+	 */
+	public void setFitness(double fitness){
+		this.fitness = fitness;
+	}
+	
+	/**
+	 * It gets the fitness of the chromosome
+	 * @return the fitness value
+	 */
+	public double getFitness(){
+		return fitness;
+	}
+
+	/**
+	 * Stores the examples correctly classified by the chromosome (used to evaluate its offspring)
+	 * @param correct bitset with the examples correctly classified
+	 * @param hits number of examples correctly classified
+	 */
+	public void setCorrect(long [] correct, int hits){
+		this.correct = correct;
+		this.hits = hits;
+		clearParent();
+	}
+
+	/**
+	 * Forgets the chromosome this one was obtained from (once it is evaluated, so that its ancestors can be freed)
+	 */
+	public void clearParent(){
+		parent = null;
+		flipped = null;
+	}
+
+	/**
+	 * It gets the examples correctly classified by the chromosome
+	 * @return a bitset with the examples correctly classified (null if they are not stored)
+	 */
+	public long [] getCorrect(){
+		return correct;
+	}
+
+	/**
+	 * It gets the number of examples correctly classified by the chromosome (only if they are stored)
+	 * @return the number of examples correctly classified
+	 */
+	public int getHits(){
+		return hits;
+	}
+
+	/**
+	 * Copies the evaluation of a chromosome with the same genes
+	 * @param c the evaluated chromosome
+	 */
+	public void copyEvaluation(Chromosome c){
+		setFitness(c.fitness);
+		setCorrect(c.correct, c.hits);
+		evaluated();
+	}
+
+	/**
+	 * Sets the chromosome this one was obtained from
+	 * @param parent the parent chromosome
+	 * @param flipped the genes that differ from the parent
+	 */
+	public void setParent(Chromosome parent, int [] flipped){
+		this.parent = parent;
+		this.flipped = flipped;
+	}
+
+	/**
+	 * It gets the chromosome this one was obtained from
+	 * @return the parent chromosome (null if it is unknown or the chromosome has been evaluated)
+	 */
+	public Chromosome getParent(){
+		return parent;
+	}
+
+	/**
+	 * It gets the genes that differ from the parent
+	 * @return the positions of the genes flipped with respect to the parent
+	 */
+	public int [] getFlipped(){
+		return flipped;
+	}
+	
+	/**
+	 * It computes the hamming distance between chromosomes
+	 * @param c the other chromosome
+	 * @return the number of different genes between chromosomes
+	 */
+	public int hamming(Chromosome c){
+		int dist = 0;
+		for (int i=0; i<individual.length; i++) dist += Long.bitCount(c.individual[i] ^ individual[i]);
+				
+		return dist;
+	}
+	
+		
+	/**
+	 * It creates a complete copy of the chromosome
+	 */
+	public Chromosome clone(){
+		Chromosome c = new Chromosome();
+		c.individual = individual.clone();
+		c.size = size;
+		c.fitness = this.fitness;
+		c.evaluate = false;
+		return c;
+	}
+	
+	/**
+	 * It gets the whole chromosome representation
+	 * @return the genotype of the chromosome (packed in 64-bit words)
+	 */
+	public long [] getChromosome(){
+		return this.individual;
+	}
+
+	/**
+	 * It gets the chromosome representation as an array of genes
+	 * @return the genotype of the chromosome (one value per gene)
+	 */
+	public boolean [] getGenes(){
+		boolean [] genes = new boolean[size];
+		for (int j = 0; j < size; j++){
+			genes[j] = get(j);
+		}
+		return genes;
+	}
+	
+	/**
+	 * Obtains the positions (indices) of the genes that are different between chromosomes
+	 * @param c the other chromosome
+	 * @param differ output array with the indices, in ascending order (at least as many positions as genes)
+	 * @return the number of different genes
+	 */
+	public int differ (Chromosome c, int [] differ){
+		int n = 0;
+		long [] cChrom = c.getChromosome();
+		for (int i = 0; i < individual.length; i++){
+			long word = individual[i] ^ cChrom[i];
+			while (word != 0){
+				differ[n++] = (i << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return n;
+	}
+	
+	/**
+	 * It changes the value of the genes stated in positions
+	 * @param positions
+	 */
+	public void flip(int [] positions){
+		for (int i = 0; i < positions.length; i++){
+			individual[positions[i] >>> 6] ^= 1L << positions[i];
+		}
+	}
+		
+	/**
+	 * Compares the fitness of two Chrmosomes for the ordering procedure
+	 * @param a Chromosome the other chromosome
+	 * @return int -1 if the current Chrosome is worst than the one that is compared, 1 for the contrary case and 0
+	 * if they are equal.
+	 */
+	public int compareTo(Chromosome a) {
+		if (a.fitness < this.fitness) {
+			return -1;
+		}
+		if (a.fitness > this.fitness) {
+			return 1;
+		}
+		return 0;
+	}
+
+
+}
@@ -0,0 +1,627 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: CompiledModel</p>
+ *
+ * <p>Description: Read-only classifier compiled from a trained knowledge base. The rules are stored in flat arrays
+ * (antecedents, also by variable, weights and classes) together with their index, and nothing is modified while classifying, so a
+ * single model can be shared by any number of threads. The temporary structures of each call are kept in a
+ * workspace, either given by the caller or owned by the current thread. The fired rules are reported to an
+ * optional sink, which must be thread-safe if the model is used concurrently.</p>
+ *
+ * <p>Blocks of examples are classified together: the candidate rules of all the examples of the block are obtained
+ * first, and then the rules are processed in blocks small enough to stay in the L1 cache, each one against all the
+ * examples of the block. Every example processes its rules in ascending order, so the result is the same as
+ * classifying the examples one by one. The matching degrees of the candidate rules are computed by the (vectorised)
+ * matching kernel, gathering the labels of the rules from the antecedents stored by variable. When an example can
+ * match most rules of a block, the matching degrees of the whole block are computed instead, with contiguous loads.</p>
+ *
+ * @version 1.0
+ */
+public class CompiledModel {
+
+	/**
+	 * Receives the rule used to classify each example (winning rule)
+	 */
+	public interface FiredRuleSink {
+
+		/**
+		 * It is called each time a rule is used to classify an example
+		 * @param rule position of the rule in the knowledge base the model was compiled from
+		 */
+		void fired(int rule);
+	}
+
+	/**
+	 * Thread-safe sink that counts how many times each rule is fired
+	 */
+	public static class FiredRuleCounter implements FiredRuleSink, Serializable {
+
+		private static final long serialVersionUID = 4125639063826712431L;
+
+		private AtomicLongArray counts;
+
+		/**
+		 * Creates a counter with all the counts set to zero
+		 * @param numRules number of rules
+		 */
+		public FiredRuleCounter(int numRules){
+			counts = new AtomicLongArray(numRules);
+		}
+
+		public void fired(int rule){
+			counts.incrementAndGet(rule);
+		}
+
+		/**
+		 * It returns the number of times a rule has been fired
+		 * @param rule position of the rule in the knowledge base
+		 * @return the number of times the rule has been fired
+		 */
+		public long getCount(int rule){
+			return counts.get(rule);
+		}
+
+		/**
+		 * It returns the number of rules of the counter
+		 * @return the number of rules
+		 */
+		public int size(){
+			return counts.length();
+		}
+	}
+
+	/**
+	 * Temporary structures of a call. Each thread must use its own workspace
+	 */
+	public static class Workspace {
+		float[][] membership; // Pre-computed membership degrees of the example to be classified
+		float[] degrees; // Matching degrees of the candidate rules (same positions as the candidates)
+		float[] ruleDegrees; // Matching degrees of a block of rules
+		int[] labels; // Labels of a variable for a group of candidate rules (vectorised kernels)
+		double[] outputDegrees; // Output of the fuzzy reasoning methods
+		int[] bestRule; // Best rule of each class (winning rule)
+		RuleIndex.Workspace indexWorkspace; // Rules that can match the example to be classified
+
+		// Blocks of examples (allocated the first time they are needed)
+		double[][] rows; // examples of the block (copied from a dataset)
+		float[][][] blockMembership; // membership degrees of each example of the block
+		int[][] blockCandidates; // rules that can match each example of the block, in ascending order
+		int[] numCandidates, cursor; // number of candidates of each example, and next candidate to be processed
+		double[][] blockOutput; // output of the fuzzy reasoning method for each example of the block
+		int[][] blockBestRule; // best rule of each class for each example of the block (winning rule)
+	}
+
+	public static final int BLOCK_SIZE = 256; // number of examples classified together
+	static final int RULE_BLOCK_BYTES = 16*1024; // size of the rules processed together (antecedents by variable, weight and class)
+
+	private final DataBase dataBase;
+	private final int numRules, numVariables, numClasses;
+	private final byte[][] antecedents; // antecedents[rule][variable] = label (or nominal value) of the rule
+	private final int[][] columns; // columns[variable][rule] = label (or nominal value) of the rule
+	private final float[] ruleWeights;
+	private final byte[] ruleClasses;
+	private final int[] ruleIds; // position of each rule in the knowledge base
+	private final RuleIndex index;
+	private final MatchingKernel kernel;
+	private final int ruleBlock; // number of rules processed together
+	private final FiredRuleSink sink;
+	private final ThreadLocal<Workspace> workspaces;
+
+	/**
+	 * Compiles a set of rules of a knowledge base
+	 * @param kb the knowledge base
+	 * @param selected whether each rule of the knowledge base is included (null to include all of them)
+	 * @param sink receiver of the fired rules (null if they are not recorded)
+	 */
+	CompiledModel(KnowledgeBase kb, boolean[] selected, FiredRuleSink sink){
+		this.dataBase = kb.getDataBase();
+		this.sink = sink;
+		numVariables = dataBase.getNumVariables();
+		numClasses = dataBase.getNumClasses();
+		int n = 0;
+		for (int i = 0; i < kb.size(); i++)
+			if (selected == null || selected[i])
+				n++;
+		numRules = n;
+		antecedents = new byte[numRules][];
+		columns = new int[numVariables][numRules];
+		ruleWeights = new float[numRules];
+		ruleClasses = new byte[numRules];
+		ruleIds = new int[numRules];
+		for (int i = 0, rule = 0; i < kb.size(); i++){
+			if (selected == null || selected[i]){
+				FuzzyRule fr = kb.getRule(i);
+				antecedents[rule] = fr.getAntecedent();
+				for (int j = 0; j < numVariables; j++)
+					columns[j][rule] = antecedents[rule][j];
+				ruleWeights[rule] = fr.getRuleWeight();
+				ruleClasses[rule] = fr.getClassIndex();
+				ruleIds[rule] = i;
+				rule++;
+			}
+		}
+		index = new RuleIndex(antecedents, dataBase);
+		kernel = MatchingKernel.getKernel(kb.getTNorm()); // selected once: no branches on the t-norm while classifying
+		ruleBlock = Math.max(64, RULE_BLOCK_BYTES/(4*numVariables + 5)) & ~15;
+		workspaces = new ThreadLocal<Workspace>(){
+			protected Workspace initialValue(){
+				return newWorkspace();
+			}
+		};
+	}
+
+	/**
+	 * Creates the temporary structures needed to classify with this model
+	 * @return a new workspace
+	 */
+	public Workspace newWorkspace(){
+		Workspace ws = new Workspace();
+		ws.membership = dataBase.newMembershipDegrees();
+		ws.degrees = new float[numRules];
+		ws.ruleDegrees = new float[Math.min(ruleBlock, numRules)];
+		ws.labels = new int[kernel.getLanes()];
+		ws.outputDegrees = new double[numClasses+1];
+		ws.bestRule = new int[numClasses];
+		ws.indexWorkspace = index.newWorkspace();
+		return ws;
+	}
+
+	/**
+	 * It returns the number of rules of the model
+	 * @return the number of rules
+	 */
+	public int getNumRules(){
+		return numRules;
+	}
+
+	/**
+	 * It returns the position of a rule in the knowledge base it was compiled from
+	 * @param rule position of the rule in the model
+	 * @return the position of the rule in the knowledge base
+	 */
+	public int getRuleId(int rule){
+		return ruleIds[rule];
+	}
+
+	/**
+	 * It returns the class of a rule
+	 * @param rule position of the rule in the model
+	 * @return the class index of the rule
+	 */
+	public byte getClassIndex(int rule){
+		return ruleClasses[rule];
+	}
+
+	/**
+	 * It returns the data base of the model
+	 * @return the data base
+	 */
+	public DataBase getDataBase(){
+		return dataBase;
+	}
+
+	/**
+	 * Classifies a pre-encoded example using the workspace of the current thread
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @return predicted class
+	 */
+	public byte classify(byte frm, double[] example){
+		return (byte)FRM(frm, example, null, workspaces.get())[0];
+	}
+
+	/**
+	 * Classifies a pre-encoded example
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 * @return predicted class
+	 */
+	public byte classify(byte frm, double[] example, Workspace ws){
+		return (byte)FRM(frm, example, null, ws)[0];
+	}
+
+	/**
+	 * Classifies a pre-encoded example with a subset of the rules of the model
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 * @return predicted class
+	 */
+	public byte classify(byte frm, double[] example, boolean[] selected, Workspace ws){
+		return (byte)FRM(frm, example, selected, ws)[0];
+	}
+
+	/**
+	 * Classifies a pre-encoded example using the workspace of the current thread
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @return a new double array where [0] is the predicted class index and [i+1] is the degree of the i-th class
+	 */
+	public double[] classifyDegrees(byte frm, double[] example){
+		return FRM(frm, example, null, workspaces.get()).clone();
+	}
+
+	/**
+	 * Classifies a pre-encoded example with a subset of the rules of the model
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 * @return a double array where [0] is the predicted class index and [i+1] is the degree of the i-th class
+	 * (stored in the workspace: it is overwritten by the next call)
+	 */
+	public double[] classifyDegrees(byte frm, double[] example, boolean[] selected, Workspace ws){
+		return FRM(frm, example, selected, ws);
+	}
+
+	/**
+	 * Classifies a block of pre-encoded examples using the workspace of the current thread
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param examples input examples (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param from first example
+	 * @param to last example (not included)
+	 * @param classes output predicted class of each example (position i-from for the i-th example)
+	 * @param degrees output degrees of each example as in classifyDegrees (null if they are not needed)
+	 */
+	public void classify(byte frm, double[][] examples, int from, int to, byte[] classes, double[][] degrees){
+		classify(frm, examples, from, to, null, classes, degrees, workspaces.get());
+	}
+
+	/**
+	 * Classifies a block of pre-encoded examples with a subset of the rules of the model
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param examples input examples (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param from first example
+	 * @param to last example (not included)
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @param classes output predicted class of each example (position i-from for the i-th example)
+	 * @param degrees output degrees of each example as in classifyDegrees (null if they are not needed)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 */
+	public void classify(byte frm, double[][] examples, int from, int to, boolean[] selected, byte[] classes, double[][] degrees, Workspace ws){
+		for (int start = from; start < to; start += BLOCK_SIZE){
+			int n = Math.min(BLOCK_SIZE, to - start);
+			classifyBlock(frm, examples, start, n, selected, ws);
+			copyOutput(ws, n, classes, degrees, start - from);
+		}
+	}
+
+	/**
+	 * Classifies a range of examples of a dataset using the workspace of the current thread
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param data the dataset
+	 * @param from first example
+	 * @param to last example (not included)
+	 * @param classes output predicted class of each example (position i-from for the i-th example)
+	 * @param degrees output degrees of each example as in classifyDegrees (null if they are not needed)
+	 */
+	public void classify(byte frm, myDataset data, int from, int to, byte[] classes, double[][] degrees){
+		classify(frm, data, null, from, to, null, classes, degrees, workspaces.get());
+	}
+
+	/**
+	 * Classifies a range of examples of a dataset with a subset of the rules of the model
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param data the dataset
+	 * @param order list of examples to be classified (null to classify the examples in the range)
+	 * @param from first position of the range
+	 * @param to last position of the range (not included)
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @param classes output predicted class of each example (position p-from for the p-th position)
+	 * @param degrees output degrees of each example as in classifyDegrees (null if they are not needed)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 */
+	public void classify(byte frm, myDataset data, int[] order, int from, int to, boolean[] selected, byte[] classes, double[][] degrees, Workspace ws){
+		allocateBlock(ws);
+		for (int start = from; start < to; start += BLOCK_SIZE){
+			int n = Math.min(BLOCK_SIZE, to - start);
+			for (int e = 0; e < n; e++)
+				data.getEncodedExample(order == null ? start + e : order[start + e], ws.rows[e]);
+			classifyBlock(frm, ws.rows, 0, n, selected, ws);
+			copyOutput(ws, n, classes, degrees, start - from);
+		}
+	}
+
+	/**
+	 * Allocates the structures of the blocks of examples of a workspace (if they do not exist)
+	 * @param ws the workspace
+	 */
+	private void allocateBlock(Workspace ws){
+		if (ws.rows != null)
+			return;
+		ws.rows = new double[BLOCK_SIZE][numVariables];
+		ws.blockMembership = new float[BLOCK_SIZE][][];
+		ws.blockCandidates = new int[BLOCK_SIZE][];
+		ws.blockOutput = new double[BLOCK_SIZE][numClasses+1];
+		ws.blockBestRule = new int[BLOCK_SIZE][numClasses];
+		for (int e = 0; e < BLOCK_SIZE; e++){
+			ws.blockMembership[e] = dataBase.newMembershipDegrees();
+			ws.blockCandidates[e] = new int[16];
+		}
+		ws.numCandidates = new int[BLOCK_SIZE];
+		ws.cursor = new int[BLOCK_SIZE];
+	}
+
+	/**
+	 * Classifies a block of examples (the output is stored in the workspace)
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param examples input examples
+	 * @param offset position of the first example of the block
+	 * @param n number of examples of the block (at most BLOCK_SIZE)
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @param ws workspace of the current thread
+	 */
+	private void classifyBlock(byte frm, double[][] examples, int offset, int n, boolean[] selected, Workspace ws){
+		allocateBlock(ws);
+		// Candidate rules of each example
+		int pending = 0;
+		for (int e = 0; e < n; e++){
+			double[] example = examples[offset+e];
+			dataBase.computeMembershipDegrees(example, ws.blockMembership[e]);
+			int nCandidates = select(ws.indexWorkspace.getIds(), index.getCandidates(ws.blockMembership[e], example, ws.indexWorkspace), selected);
+			if (ws.blockCandidates[e].length < nCandidates)
+				ws.blockCandidates[e] = new int[Math.max(nCandidates, 2*ws.blockCandidates[e].length)];
+			System.arraycopy(ws.indexWorkspace.getIds(), 0, ws.blockCandidates[e], 0, nCandidates);
+			ws.numCandidates[e] = nCandidates;
+			ws.cursor[e] = 0;
+			reset(ws.blockOutput[e], ws.blockBestRule[e]);
+			if (nCandidates > 0)
+				pending++;
+		}
+		// Blocks of rules against all the examples (each example advances through its candidates in ascending order)
+		for (int fromRule = 0; fromRule < numRules && pending > 0; fromRule += ruleBlock){
+			int toRule = Math.min(numRules, fromRule + ruleBlock);
+			for (int e = 0; e < n; e++){
+				int[] candidates = ws.blockCandidates[e];
+				int c = ws.cursor[e], end = c;
+				while (end < ws.numCandidates[e] && candidates[end] < toRule)
+					end++;
+				if (end == c)
+					continue;
+				if (kernel.getLanes() > 1 && 2L*(end - c) >= toRule - fromRule){ // dense: the whole block of rules
+					kernel.compute(ws.blockMembership[e], columns, fromRule, toRule, ws.ruleDegrees);
+					for (int k = c; k < end; k++)
+						ws.degrees[k] = ws.ruleDegrees[candidates[k] - fromRule];
+				}
+				else
+					kernel.compute(ws.blockMembership[e], columns, candidates, c, end, ws.degrees, ws.labels);
+				if (frm == KnowledgeBase.FRM_WINNING_RULE)
+					accumulateWR(candidates, c, end, ws.degrees, ws.blockOutput[e], ws.blockBestRule[e]);
+				else
+					accumulateAC(candidates, c, end, ws.degrees, ws.blockOutput[e]);
+				ws.cursor[e] = end;
+				if (end == ws.numCandidates[e])
+					pending--;
+			}
+		}
+		for (int e = 0; e < n; e++){
+			if (frm == KnowledgeBase.FRM_WINNING_RULE)
+				finishWR(ws.blockOutput[e], ws.blockBestRule[e]);
+			else
+				finishAC(ws.blockOutput[e]);
+		}
+	}
+
+	/**
+	 * Copies the output of a block of examples
+	 * @param ws workspace with the output of the block
+	 * @param n number of examples of the block
+	 * @param classes output predicted classes
+	 * @param degrees output degrees (null if they are not needed)
+	 * @param position position of the first example of the block in the output arrays
+	 */
+	private void copyOutput(Workspace ws, int n, byte[] classes, double[][] degrees, int position){
+		for (int e = 0; e < n; e++){
+			classes[position+e] = (byte)ws.blockOutput[e][0];
+			if (degrees != null)
+				System.arraycopy(ws.blockOutput[e], 0, degrees[position+e], 0, numClasses+1);
+		}
+	}
+
+	/**
+	 * Computes the matching degree of the input example with a rule (with the t-norm of the model) using the
+	 * workspace of the current thread
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param antecedent antecedents of the rule (it does not need to be a rule of the model)
+	 * @return matching degree of the input example with the rule
+	 */
+	public float computeMatchingDegree(double[] example, byte[] antecedent){
+		Workspace ws = workspaces.get();
+		dataBase.computeMembershipDegrees(example, ws.membership);
+		return kernel.compute(ws.membership, antecedent);
+	}
+
+	/**
+	 * Computes the association degree of the input example with all the rules of the model that can match it,
+	 * in the same way as the fuzzy reasoning methods
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param ws workspace of the current thread
+	 * @param rules output positions of the rules with association degree greater than zero, in ascending order (at least getNumRules() positions)
+	 * @param degrees output association degrees of these rules (at least getNumRules() positions)
+	 * @return the number of rules with association degree greater than zero
+	 */
+	public int computeAssociationDegrees(double[] example, Workspace ws, int[] rules, float[] degrees){
+		dataBase.computeMembershipDegrees(example, ws.membership);
+		int nCandidates = index.getCandidates(ws.membership, example, ws.indexWorkspace);
+		int[] candidates = ws.indexWorkspace.getIds();
+		kernel.compute(ws.membership, columns, candidates, 0, nCandidates, ws.degrees, ws.labels);
+		int n = 0;
+		for (int c = 0; c < nCandidates; c++){
+			int rule = candidates[c];
+			float degree = ws.degrees[c]*ruleWeights[rule];
+			if (degree > 0){
+				rules[n] = rule;
+				degrees[n] = degree;
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Removes the rules that are not selected from a list of candidate rules
+	 * @param candidates list of candidate rules (the selected ones are moved to the first positions, in the same order)
+	 * @param n number of candidate rules
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @return the number of selected candidate rules
+	 */
+	private static int select(int[] candidates, int n, boolean[] selected){
+		if (selected == null)
+			return n;
+		int m = 0;
+		for (int c = 0; c < n; c++)
+			if (selected[candidates[c]])
+				candidates[m++] = candidates[c];
+		return m;
+	}
+
+	/**
+	 * Fuzzy Reasoning Method
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example
+	 * @param selected whether each rule of the model is used (null to use all of them)
+	 * @param ws workspace of the current thread
+	 * @return a double array where [0] is the predicted class index and [i+1] is the degree of the i-th class (stored in the workspace)
+	 */
+	private double[] FRM(byte frm, double[] example, boolean[] selected, Workspace ws){
+		dataBase.computeMembershipDegrees(example, ws.membership);
+		int[] candidates = ws.indexWorkspace.getIds();
+		int nCandidates = select(candidates, index.getCandidates(ws.membership, example, ws.indexWorkspace), selected);
+		kernel.compute(ws.membership, columns, candidates, 0, nCandidates, ws.degrees, ws.labels);
+		double[] output = ws.outputDegrees;
+		reset(output, ws.bestRule);
+		if (frm == KnowledgeBase.FRM_WINNING_RULE){
+			accumulateWR(candidates, 0, nCandidates, ws.degrees, output, ws.bestRule);
+			finishWR(output, ws.bestRule);
+		}
+		else{
+			accumulateAC(candidates, 0, nCandidates, ws.degrees, output);
+			finishAC(output);
+		}
+		return output;
+	}
+
+	/**
+	 * Initializes the output of the fuzzy reasoning methods
+	 * @param output degree of each class (position i+1 for the i-th class)
+	 * @param bestRule best rule of each class
+	 */
+	private void reset(double[] output, int[] bestRule){
+		for (int i = 0; i < numClasses; i++){
+			bestRule[i] = 0;
+			output[i+1] = 0.0;
+		}
+	}
+
+	/**
+	 * Additive Combination Fuzzy Reasoning Method: it adds the association degrees of a range of candidate rules
+	 * to the degree of their classes
+	 * @param candidates candidate rules, in ascending order
+	 * @param from first candidate
+	 * @param to last candidate (not included)
+	 * @param degrees matching degree of each candidate rule (same positions)
+	 * @param output degree of each class (position i+1 for the i-th class)
+	 */
+	private void accumulateAC(int[] candidates, int from, int to, float[] degrees, double[] output){
+		for (int c = from; c < to; c++){
+			int rule = candidates[c];
+			double degree = degrees[c]*ruleWeights[rule];
+			output[ruleClasses[rule]+1] += degree;
+		}
+	}
+
+	/**
+	 * Additive Combination Fuzzy Reasoning Method: it obtains the class with the highest confidence
+	 * @param output degree of each class (position i+1 for the i-th class). Then [0] is the predicted class index,
+	 * [1] is the highest degree and [i+1] is the degree of the i-th class (i > 0)
+	 */
+	private void finishAC(double[] output){
+		int best = 0;
+		for (int i = 1; i < numClasses; i++)
+			if (output[i+1] > output[best+1])
+				best = i;
+		output[0] = best;
+		output[1] = output[best+1];
+	}
+
+	/**
+	 * Winning Rule Fuzzy Reasoning Method: it keeps the rule with the highest association degree of each class
+	 * among a range of candidate rules
+	 * @param candidates candidate rules, in ascending order
+	 * @param from first candidate
+	 * @param to last candidate (not included)
+	 * @param degrees matching degree of each candidate rule (same positions)
+	 * @param output highest degree of each class (position i+1 for the i-th class)
+	 * @param bestRule best rule of each class
+	 */
+	private void accumulateWR(int[] candidates, int from, int to, float[] degrees, double[] output, int[] bestRule){
+		for (int c = from; c < to; c++){
+			int rule = candidates[c];
+			double degree = degrees[c]*ruleWeights[rule];
+			int classIndex = ruleClasses[rule];
+			if (output[classIndex+1] < degree){
+				output[classIndex+1] = degree;
+				bestRule[classIndex] = rule;
+			}
+		}
+	}
+
+	/**
+	 * Winning Rule Fuzzy Reasoning Method: it obtains the class of the best rule (truncation)
+	 * @param output highest degree of each class (position i+1 for the i-th class). Then [0] is the predicted
+	 * class index and [i+1] is the degree of the i-th class (only the predicted one is kept)
+	 * @param bestRule best rule of each class
+	 */
+	private void finishWR(double[] output, int[] bestRule){
+		int indexMax = 1;
+		double max = output[1];
+		for (int i = 2; i < output.length; i++){
+			if (output[i] > max){
+				max = output[i];
+				output[indexMax] = 0;
+				indexMax = i;
+			}else{
+				output[i] = 0;
+			}
+		}
+		if (sink != null && numRules > 0)
+			sink.fired(ruleIds[bestRule[indexMax-1]]); //the first rule if none matches the example, as in the original method
+		output[0] = indexMax-1;
+	}
+
+}
@@ -1,6 +1,8 @@
 package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
 
 import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.FileReader;
 import java.io.File;
 import java.io.IOException;
@@ -32,24 +34,24 @@ public class DataBase implements Serializable{
 	/**
 	 * Class labels
 	 */
-	private static String[] classLabels;
+	private String[] classLabels;
 
 	/**
 	 * Number of examples of each class
 	 */
-	private static long[] classNumExamples;
+	private long[] classNumExamples;
 
 	/**
 	 * Most frequent class
 	 */
-	private static byte classMostFrequent = 0;
+	private byte classMostFrequent = 0;
 
 	/**
 	 * Most frequent class
 	 */
-	private static byte numClassLabels;
+	private byte numClassLabels;
 
-	private static byte numLinguisticLabels;
+	private byte numLinguisticLabels;
 
 	public DataBase(){
 
@@ -274,52 +276,43 @@ public class DataBase implements Serializable{
 	}
 
 	/**
-	 * Returns the matching degree of the input example with the specified antecedents
-	 * @param membershipDegrees pre-computed membership degrees (the key of the first hash map is the variable index, and the one of the second hash map is the label index)
-	 * @param antecedents antecedents of the rule
-	 * @param example input example
-	 * @return matching degree of the input example with the specified antecedents
+	 * Creates the structure of the membership degrees of an example (see computeMembershipDegrees)
+	 * @return an array with a row for each variable, and a column for each linguistic label (or nominal value)
 	 */
-	public float computeMatchingDegree (float[][] membershipDegrees, byte[] antecedents, String[] example){
-
-		float matching = 1.0f;
-
-		// Compute matching degree
-		for (int i = 0; (i < example.length)&&(matching > 0); i++){
-			// If it is a nominal value and it is not equal to the antecedent, then there is no matching
-			if (dataBase[i] instanceof FuzzyVariable)
-				matching *= membershipDegrees[i][antecedents[i]]; //t-norma producto
-			else {
-				if (!((NominalVariable)dataBase[i]).
-						getNominalValue(antecedents[i]).contentEquals(example[i]))
-					return 0.0f;
-			}       		
+	public float[][] newMembershipDegrees (){
+		float[][] membership = new float[dataBase.length][];
+		for (int i = 0; i < dataBase.length; i++){
+			if (dataBase[i] instanceof NominalVariable)
+				membership[i] = new float[((NominalVariable)dataBase[i]).getNominalValues().length];
+			else
+				membership[i] = new float[((FuzzyVariable)dataBase[i]).getFuzzySets().length];
 		}
-
-		return matching;
-
+		return membership;
 	}
 
 	/**
-	 * Computes the membership degree of the input value to the specified fuzzy set
-	 * @param variable variable index
-	 * @param label linguistic label index
-	 * @param value input value
-	 * @return membership degree of the input value to the specified fuzzy set
+	 * Computes the membership degree of the input (pre-encoded) example to all the linguistic labels of the fuzzy
+	 * variables and to all the values of the nominal variables (1 for the value of the example and 0 for the rest),
+	 * so that the matching degree of a rule does not depend on the type of the variables
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param membership output membership degrees (see newMembershipDegrees)
 	 */
-	public float computeMembershipDegree (int variable, byte label, String value){
-
-		if (dataBase[variable] instanceof NominalVariable){
-			if (!((NominalVariable)dataBase[variable]).
-					getNominalValue(label).contentEquals(value))
-				return 0.0f;
-			else
-				return 1.0f;
+	public void computeMembershipDegrees (double[] example, float[][] membership){
+		for (int i = 0; i < dataBase.length; i++){
+			float[] degrees = membership[i];
+			if (dataBase[i] instanceof NominalVariable){
+				for (int value = 0; value < degrees.length; value++)
+					degrees[value] = 0.0f;
+				int code = (int)example[i];
+				if (code >= 0 && code < degrees.length)
+					degrees[code] = 1.0f;
+			}
+			else{
+				FuzzySet[] fuzzySets = ((FuzzyVariable)dataBase[i]).getFuzzySets();
+				for (int label = 0; label < degrees.length; label++)
+					degrees[label] = (float)fuzzySets[label].getMembershipDegree(example[i]);
+			}
 		}
-		else
-			return (float)((FuzzyVariable)dataBase[variable]).getFuzzySets()[label].
-					getMembershipDegree(Double.parseDouble(value));
-
 	}
 
 	/**
@@ -336,6 +329,40 @@ public class DataBase implements Serializable{
 
 	}
 
+	/**
+	 * Returns a new rule represented by a byte array containing the index of antecedents
+	 * @param inputValues input (pre-encoded) example: real values for fuzzy variables and nominal value indices for nominal variables
+	 * @return a new rule represented by a byte array containing the index of antecedents
+	 */
+	public byte[] getRuleFromExample (double[] inputValues){
+		byte[] labels = new byte[dataBase.length];
+		// Get each attribute label
+		for (int i = 0; i < dataBase.length; i++){
+			if (dataBase[i] instanceof FuzzyVariable)
+				labels[i] = ((FuzzyVariable)dataBase[i]).getLabelIndex(inputValues[i]);
+			else
+				labels[i] = (byte)inputValues[i];
+		}
+		return labels;
+
+	}
+
+	/**
+	 * Encodes an example: real values for fuzzy variables and nominal value indices for nominal variables
+	 * @param inputValues input string representing the example
+	 * @return the pre-encoded example (nominal values not found are encoded as -1)
+	 */
+	public double[] encodeExample (String[] inputValues){
+		double[] example = new double[dataBase.length];
+		for (int i = 0; i < dataBase.length; i++){
+			if (dataBase[i] instanceof FuzzyVariable)
+				example[i] = Double.parseDouble(inputValues[i]);
+			else
+				example[i] = dataBase[i].getLabelIndex(inputValues[i]);
+		}
+		return example;
+	}
+
 	/**
 	 * Returns class index
 	 * @param classLabel class label
@@ -463,25 +490,26 @@ public class DataBase implements Serializable{
 	 * @param classLabels the class labels
 	 */
 	public void setClassLabels(String [] classLabels){
-		DataBase.classLabels = classLabels;
+		this.classLabels = classLabels;
 	}
 
 	public void setClassNumExamples(long [] classNumExamples){
-		DataBase.classNumExamples = classNumExamples;
+		this.classNumExamples = classNumExamples;
 	}
 
 	public void setMostFrequentClass(byte clas){
-		DataBase.classMostFrequent = clas;
+		this.classMostFrequent = clas;
 	}
 
 	public void setNumClasses(byte num){
-		DataBase.numClassLabels = num;
+		this.numClassLabels = num;
 	}
 
-	//If needed to serialize
-
-	/*
-	@Override
+	/**
+	 * It writes the data base (variables, class labels and number of examples of each class)
+	 * @param out the output stream
+	 * @throws IOException if the data base cannot be written
+	 */
 	public void write(DataOutput out) throws IOException{
 		int nVariables = getNumVariables();
 		out.writeInt(nVariables);
@@ -503,9 +531,14 @@ public class DataBase implements Serializable{
 		}
 		out.writeByte(classMostFrequent);
 		out.writeByte(numClassLabels);
+		out.writeByte(numLinguisticLabels);
 	}
 
-	@Override
+	/**
+	 * It reads a data base written with {@link #write(DataOutput)}
+	 * @param in the input stream
+	 * @throws IOException if the data base cannot be read
+	 */
 	public void readFields(DataInput in) throws IOException {
 		int dbSize = in.readInt();
 		dataBase = new Variable[dbSize];
@@ -534,7 +567,7 @@ public class DataBase implements Serializable{
 		}
 		classMostFrequent = in.readByte();
 		numClassLabels = in.readByte();
+		numLinguisticLabels = in.readByte();
 	}
-	 */
 
 }
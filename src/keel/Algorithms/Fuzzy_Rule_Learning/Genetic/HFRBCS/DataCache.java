@@ -0,0 +1,291 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: DataCache</p>
+ *
+ * <p>Description: Binary cache of a data file, stored next to it (with the extension ".cache"), so that the
+ * file is only parsed once. The cache contains a header (size and modification time of the data file, and the
+ * data base used to encode the examples: variables, fuzzy partitions, class labels and number of examples of each class,
+ * together with whether it was built from the header of this data file or from the one of another file, e.g. the
+ * training file of a test file) followed by one block per column: the real values of the fuzzy variables (doubles, so that the examples are
+ * exactly the same as the parsed ones), the nominal value indices of the nominal variables and the classes.
+ * The blocks are memory-mapped and copied into the columns of the dataset, without parsing any example.
+ * A cache is only used if the size and the modification time of the data file have not changed, and if the
+ * examples were encoded in the same way (type of the variables, nominal values and class labels).</p>
+ *
+ * @version 1.0
+ */
+public class DataCache {
+
+	private static final long MAGIC = 0x4B45454C44415432L; // "KEELDAT2"
+	private static final int MAX_MAPPING = 1 << 30; // maximum number of bytes mapped at the same time
+
+	/**
+	 * It returns the name of the cache of a data file
+	 * @param inputFile the data file
+	 * @return the name of the cache file
+	 */
+	public static String getCacheFile(String inputFile){
+		return inputFile + ".cache";
+	}
+
+	/**
+	 * It serializes a data base
+	 * @param dataBase the data base
+	 * @return the bytes of the data base
+	 * @throws IOException if the data base cannot be written
+	 */
+	private static byte[] toBytes(DataBase dataBase) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		dataBase.write(out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * It obtains a description of the encoding of the examples given by a data base: the type of each variable,
+	 * the nominal values of the nominal variables and the class labels (the fuzzy partitions do not change the
+	 * encoding, so the cache can be used with any number of linguistic labels)
+	 * @param dataBase the data base
+	 * @return the description of the encoding
+	 * @throws IOException if the description cannot be encoded
+	 */
+	private static byte[] getSchema(DataBase dataBase) throws IOException{
+		StringBuilder schema = new StringBuilder();
+		for (int j = 0; j < dataBase.getNumVariables(); j++){
+			if (dataBase.get(j) instanceof NominalVariable)
+				schema.append("nominal ").append(Arrays.toString(((NominalVariable)dataBase.get(j)).getNominalValues()));
+			else
+				schema.append("real");
+			schema.append('\n');
+		}
+		for (byte j = 0; j < dataBase.getNumClasses(); j++)
+			schema.append(dataBase.getClassLabel(j)).append('\n');
+		return schema.toString().getBytes("UTF-8");
+	}
+
+	/**
+	 * It opens the cache of a data file and checks that it is up to date
+	 * @param inputFile the data file
+	 * @return the cache file (placed after the size and modification time of the data file), or null if there is no valid cache
+	 * @throws IOException if the cache cannot be read
+	 */
+	private static RandomAccessFile open(String inputFile) throws IOException{
+		File source = new File(inputFile);
+		File cache = new File(getCacheFile(inputFile));
+		if (!cache.isFile() || !source.isFile())
+			return null;
+		RandomAccessFile file = new RandomAccessFile(cache, "r");
+		if (file.length() < 24 || file.readLong() != MAGIC || file.readLong() != source.length()
+				|| file.readLong() != source.lastModified()){
+			file.close();
+			return null;
+		}
+		return file;
+	}
+
+	/**
+	 * It reads the data base stored in the cache of a data file
+	 * @param inputFile the data file
+	 * @param numLinguisticLabels number of linguistic labels of the fuzzy variables
+	 * @return the data base, or null if there is no valid cache, it was not built from this data file or it was built
+	 * with a different number of labels
+	 */
+	public static DataBase readDataBase(String inputFile, byte numLinguisticLabels){
+		try{
+			RandomAccessFile file = open(inputFile);
+			if (file == null)
+				return null;
+			if (!file.readBoolean()){ // the data base of another file
+				file.close();
+				return null;
+			}
+			byte[] bytes = new byte[file.readInt()];
+			file.readFully(bytes);
+			file.close();
+			DataBase dataBase = new DataBase();
+			dataBase.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+			if (dataBase.getNumLinguisticLabels() != numLinguisticLabels)
+				return null;
+			return dataBase;
+		}catch(IOException e){
+			System.err.println("The cache of "+inputFile+" cannot be read: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * It reads the examples stored in the cache of a data file
+	 * @param inputFile the data file
+	 * @param dataBase the data base used to encode the examples
+	 * @return the dataset, or null if there is no valid cache for the data file and data base
+	 */
+	public static myDataset read(String inputFile, DataBase dataBase){
+		try{
+			RandomAccessFile file = open(inputFile);
+			if (file == null)
+				return null;
+			try{
+				file.skipBytes(1); // origin of the data base
+				file.skipBytes(file.readInt()); // data base
+				byte[] bytes = new byte[file.readInt()];
+				file.readFully(bytes);
+				if (!Arrays.equals(bytes, getSchema(dataBase)))
+					return null;
+				int numExamples = file.readInt();
+				int nVariables = dataBase.getNumVariables();
+				double[][] numericColumns = new double[nVariables][];
+				byte[][] nominalColumns = new byte[nVariables][];
+				FileChannel channel = file.getChannel();
+				long offset = file.getFilePointer();
+				for (int j = 0; j < nVariables; j++){
+					if (dataBase.get(j) instanceof FuzzyVariable){
+						numericColumns[j] = new double[numExamples];
+						for (int from = 0; from < numExamples; ){
+							int n = Math.min(numExamples - from, MAX_MAPPING/8);
+							MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset, 8L*n);
+							block.asDoubleBuffer().get(numericColumns[j], from, n);
+							offset += 8L*n;
+							from += n;
+						}
+					}
+					else{
+						nominalColumns[j] = readBytes(channel, offset, numExamples);
+						offset += numExamples;
+					}
+				}
+				byte[] classes = readBytes(channel, offset, numExamples);
+				return new myDataset(dataBase, numericColumns, nominalColumns, classes);
+			}finally{
+				file.close();
+			}
+		}catch(IOException e){
+			System.err.println("The cache of "+inputFile+" cannot be read: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * It reads a block of bytes of the cache
+	 * @param channel the channel of the cache
+	 * @param offset position of the block
+	 * @param length length of the block
+	 * @return the bytes of the block
+	 * @throws IOException if the cache cannot be read
+	 */
+	private static byte[] readBytes(FileChannel channel, long offset, int length) throws IOException{
+		byte[] bytes = new byte[length];
+		for (int from = 0; from < length; ){
+			int n = Math.min(length - from, MAX_MAPPING);
+			channel.map(FileChannel.MapMode.READ_ONLY, offset + from, n).get(bytes, from, n);
+			from += n;
+		}
+		return bytes;
+	}
+
+	/**
+	 * It writes the cache of a data file (a temporary file is renamed, so that a partial cache is never read).
+	 * If the cache cannot be written, the error is reported and ignored
+	 * @param inputFile the data file
+	 * @param dataBase the data base used to encode the examples
+	 * @param ownDataBase whether the data base was built from the header of this data file (only then it can be
+	 * read with readDataBase)
+	 * @param data the examples of the data file
+	 */
+	public static void write(String inputFile, DataBase dataBase, boolean ownDataBase, myDataset data){
+		File source = new File(inputFile);
+		File cache = new File(getCacheFile(inputFile));
+		File temp = null;
+		try{
+			temp = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile()); //unique name (concurrent runs)
+			long size = source.length(), lastModified = source.lastModified();
+			byte[] db = toBytes(dataBase);
+			byte[] schema = getSchema(dataBase);
+			RandomAccessFile file = new RandomAccessFile(temp, "rw");
+			try{
+				file.setLength(0);
+				file.writeLong(MAGIC);
+				file.writeLong(size);
+				file.writeLong(lastModified);
+				file.writeBoolean(ownDataBase);
+				file.writeInt(db.length);
+				file.write(db);
+				file.writeInt(schema.length);
+				file.write(schema);
+				file.writeInt(data.size());
+				FileChannel channel = file.getChannel();
+				int chunk = 1 << 16;
+				ByteBuffer buffer = ByteBuffer.allocate(8*chunk);
+				for (int j = 0; j < dataBase.getNumVariables(); j++){
+					if (data.numericColumns[j] != null){
+						for (int from = 0; from < data.size(); from += chunk){
+							int n = Math.min(chunk, data.size() - from);
+							buffer.clear();
+							buffer.asDoubleBuffer().put(data.numericColumns[j], from, n);
+							buffer.limit(8*n);
+							while (buffer.hasRemaining())
+								channel.write(buffer);
+						}
+					}
+					else
+						file.write(data.nominalColumns[j], 0, data.size());
+				}
+				file.write(data.classes, 0, data.size());
+			}finally{
+				file.close();
+			}
+			if (!temp.renameTo(cache)){
+				cache.delete();
+				if (!temp.renameTo(cache))
+					throw new IOException("the temporary file cannot be renamed");
+			}
+		}catch(IOException e){
+			System.err.println("The cache of "+inputFile+" cannot be written: " + e);
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+}
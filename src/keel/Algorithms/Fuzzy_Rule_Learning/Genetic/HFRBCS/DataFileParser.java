@@ -0,0 +1,474 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: DataFileParser</p>
+ *
+ * <p>Description: Parser of the examples of a KEEL data file. The file is memory-mapped (in windows, so that
+ * files larger than 2 GB can be read) and its bytes are copied in blocks into a small buffer, where the lines of
+ * the "@data" section are scanned directly: the values are separated by commas or spaces and the last value of
+ * each line is the class. Real values are parsed without
+ * intermediate strings when the result is exact (Double.parseDouble is used otherwise, so the values are always
+ * the same), and nominal values are translated to their indices through a table indexed by their bytes.
+ * The "@data" section can be split into ranges of whole lines, which are read by independent parsers.</p>
+ *
+ * @version 1.0
+ */
+public class DataFileParser {
+
+	private static final int WINDOW_SIZE = 1 << 28; // bytes mapped at the same time
+	private static final int BLOCK_SIZE = 1 << 16; // bytes scanned at the same time (larger if a line does not fit)
+	private static final long MAX_EXACT = 1L << 53; // maximum mantissa represented exactly by a double
+	private static final double[] POWERS_OF_TEN = { // powers of ten represented exactly by a double
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/**
+	 * Table of the values of a nominal variable (or the class) found in the file, indexed by their bytes
+	 * (open addressing, linear probing)
+	 */
+	private static class Interner {
+		byte[][] keys = new byte[16][];
+		byte[] codes = new byte[16];
+		int size;
+	}
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long fileSize; // end of the region of the file to be read
+	private MappedByteBuffer buffer; // current window of the file
+	private long windowStart; // position of the window in the file
+	private byte[] block = new byte[BLOCK_SIZE]; // bytes of the file being scanned
+	private int blockLength; // number of valid bytes of the block
+	private long blockStart; // position of the block in the file
+	private int position; // position (in the block) of the next line
+	private DataBase dataBase;
+	private boolean[] nominal;
+	private Interner[] interners; // one for each nominal variable, and the last one for the class
+	private int[] tokenStart, tokenEnd; // tokens of the current line
+	private byte[] scratch = new byte[64]; // bytes of a value that must be converted into a String
+	private byte classIndex; // class of the last example
+	private Charset charset = Charset.defaultCharset();
+
+	/**
+	 * Opens a data file and skips its header
+	 * @param inputFile the data file
+	 * @param dataBase the data base
+	 * @throws IOException if the file cannot be read or it has no "@data" section
+	 */
+	public DataFileParser(String inputFile, DataBase dataBase) throws IOException{
+		open(inputFile, dataBase);
+		fileSize = channel.size();
+		map(0);
+		// Skip all header lines
+		boolean data = false;
+		while (!data){
+			int end = nextLine();
+			if (end < 0)
+				throw new IOException("The @data section was not found in "+inputFile);
+			data = startsWith(position, end, "@data");
+			position = end;
+		}
+	}
+
+	/**
+	 * Opens a range of the "@data" section of a data file (obtained with {@link #split(int, long)})
+	 * @param inputFile the data file
+	 * @param dataBase the data base
+	 * @param start first byte of the range (beginning of a line)
+	 * @param end last byte of the range, not included (beginning of a line or end of the file)
+	 * @throws IOException if the file cannot be read
+	 */
+	public DataFileParser(String inputFile, DataBase dataBase, long start, long end) throws IOException{
+		open(inputFile, dataBase);
+		fileSize = end;
+		blockStart = start;
+		map(start);
+	}
+
+	/**
+	 * Opens the data file and creates the tables of the nominal values
+	 * @param inputFile the data file
+	 * @param dataBase the data base
+	 * @throws IOException if the file cannot be opened
+	 */
+	private void open(String inputFile, DataBase dataBase) throws IOException{
+		this.dataBase = dataBase;
+		int nVariables = dataBase.getNumVariables();
+		nominal = new boolean[nVariables];
+		interners = new Interner[nVariables + 1];
+		for (int j = 0; j < nVariables; j++){
+			nominal[j] = dataBase.get(j) instanceof NominalVariable;
+			if (nominal[j])
+				interners[j] = new Interner();
+		}
+		interners[nVariables] = new Interner();
+		tokenStart = new int[nVariables + 1];
+		tokenEnd = new int[nVariables + 1];
+		file = new RandomAccessFile(inputFile, "r");
+		channel = file.getChannel();
+	}
+
+	/**
+	 * It splits the lines not read yet into ranges of whole lines of (approximately) the same size
+	 * @param nRanges maximum number of ranges
+	 * @param minSize minimum size of each range (bytes)
+	 * @return the limits of the ranges: range r goes from limits[r] to limits[r+1] (not included)
+	 * @throws IOException if the file cannot be read
+	 */
+	public long[] split(int nRanges, long minSize) throws IOException{
+		long start = blockStart + position;
+		nRanges = (int)Math.max(1, Math.min(nRanges, (fileSize - start)/Math.max(1, minSize)));
+		long[] limits = new long[nRanges + 1];
+		limits[0] = start;
+		int n = 1;
+		for (int r = 1; r < nRanges; r++){
+			long limit = nextLineStart(Math.max(limits[n-1], start + (fileSize - start)*r/nRanges));
+			if (limit >= fileSize)
+				break;
+			if (limit > limits[n-1])
+				limits[n++] = limit;
+		}
+		limits[n++] = fileSize;
+		return Arrays.copyOf(limits, n);
+	}
+
+	/**
+	 * It finds the beginning of the first line that starts after a position of the file
+	 * @param offset the position of the file
+	 * @return the position of the first byte after the next line terminator (or the end of the file)
+	 * @throws IOException if the file cannot be read
+	 */
+	private long nextLineStart(long offset) throws IOException{
+		ByteBuffer bytes = ByteBuffer.allocate(4096);
+		while (offset < fileSize){
+			bytes.clear();
+			int n = channel.read(bytes, offset);
+			if (n <= 0)
+				break;
+			for (int i = 0; i < n; i++){
+				byte b = bytes.get(i);
+				if (b == '\n' || b == '\r')
+					return offset + i + 1;
+			}
+			offset += n;
+		}
+		return fileSize;
+	}
+
+	/**
+	 * Maps a window of the file
+	 * @param start position of the window in the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private void map(long start) throws IOException{
+		windowStart = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+	}
+
+	/**
+	 * It moves the bytes not scanned yet to the beginning of the block, and fills the rest of the block with the
+	 * next bytes of the file (the block is enlarged if it is full of bytes not scanned yet)
+	 * @return false if the end of the file has been reached, true otherwise
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private boolean fill() throws IOException{
+		int remaining = blockLength - position;
+		if (remaining == block.length)
+			block = Arrays.copyOf(block, 2*block.length);
+		System.arraycopy(block, position, block, 0, remaining);
+		blockStart += position;
+		blockLength = remaining;
+		position = 0;
+		boolean read = false;
+		while (blockLength < block.length){
+			if (!buffer.hasRemaining()){
+				if (windowStart + buffer.limit() >= fileSize)
+					break;
+				map(windowStart + buffer.limit());
+			}
+			int n = Math.min(block.length - blockLength, buffer.remaining());
+			buffer.get(block, blockLength, n);
+			blockLength += n;
+			read = true;
+		}
+		return read;
+	}
+
+	/**
+	 * It finds the next (non-empty) line of the file
+	 * @return the end of the line in the block (the line starts at position), or -1 if there are no more lines
+	 * @throws IOException if the file cannot be read
+	 */
+	private int nextLine() throws IOException{
+		while (true){
+			while (position < blockLength && (block[position] == '\n' || block[position] == '\r'))
+				position++;
+			int end = position;
+			while (end < blockLength && block[end] != '\n' && block[end] != '\r')
+				end++;
+			if (end < blockLength)
+				return end;
+			if (!fill()) // last line of the file (the bytes not scanned yet have been moved to the beginning)
+				return blockLength > position ? blockLength : -1;
+		}
+	}
+
+	/**
+	 * Checks whether a line starts with a given (ASCII) prefix
+	 * @param start start of the line
+	 * @param end end of the line
+	 * @param prefix the prefix
+	 * @return true if the line starts with the prefix
+	 */
+	private boolean startsWith(int start, int end, String prefix){
+		if (end - start < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (block[start + i] != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * It reads the next example of the file
+	 * @param row the array where the example is stored: the real value for fuzzy variables and the nominal value
+	 * index for nominal variables (-1 if the value is unknown)
+	 * @return false if there are no more examples, true otherwise
+	 * @throws IOException if the file cannot be read
+	 * @throws NumberFormatException if a real value cannot be parsed
+	 */
+	public boolean next(double[] row) throws IOException{
+		int nTokens = 0;
+		while (nTokens == 0){ // lines with only separators are skipped
+			int end = nextLine();
+			if (end < 0)
+				return false;
+			// Tokens of the line
+			int i = position;
+			while (i < end){
+				byte b = block[i];
+				if (b == ',' || b == ' '){
+					i++;
+					continue;
+				}
+				if (nTokens == tokenStart.length){
+					tokenStart = Arrays.copyOf(tokenStart, 2*nTokens);
+					tokenEnd = Arrays.copyOf(tokenEnd, 2*nTokens);
+				}
+				tokenStart[nTokens] = i;
+				while (i < end && block[i] != ',' && block[i] != ' ')
+					i++;
+				tokenEnd[nTokens++] = i;
+			}
+			position = end;
+		}
+		if (nTokens - 1 > row.length)
+			throw new IOException("Too many values in the example at byte "+(blockStart + tokenStart[0]));
+		for (int j = 0; j < nTokens - 1; j++){
+			if (nominal[j])
+				row[j] = intern(j, tokenStart[j], tokenEnd[j]);
+			else
+				row[j] = parseDouble(tokenStart[j], tokenEnd[j]);
+		}
+		for (int j = nTokens - 1; j < row.length; j++) // missing values
+			row[j] = 0;
+		classIndex = intern(nominal.length, tokenStart[nTokens-1], tokenEnd[nTokens-1]);
+		return true;
+	}
+
+	/**
+	 * It returns the class of the last example read
+	 * @return the class index (-1 if the class label is unknown)
+	 */
+	public byte getClassIndex(){
+		return classIndex;
+	}
+
+	/**
+	 * It closes the file
+	 * @throws IOException if the file cannot be closed
+	 */
+	public void close() throws IOException{
+		buffer = null;
+		channel.close();
+		file.close();
+	}
+
+	/**
+	 * It parses a real value. The value is computed directly from the bytes when the mantissa and the power of
+	 * ten are represented exactly by a double (then the result is correctly rounded, as Double.parseDouble)
+	 * @param start first byte of the value
+	 * @param end last byte of the value (not included)
+	 * @return the real value
+	 * @throws NumberFormatException if the value cannot be parsed
+	 */
+	private double parseDouble(int start, int end){
+		int i = start;
+		boolean negative = false;
+		byte b = block[i];
+		if (b == '-' || b == '+'){
+			negative = b == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int exponent = 0, digits = 0;
+		boolean exact = true, point = false;
+		for (; i < end; i++){
+			b = block[i];
+			if (b >= '0' && b <= '9'){
+				digits++;
+				if (mantissa < MAX_EXACT/10 + 1){
+					mantissa = 10*mantissa + (b - '0');
+					if (point)
+						exponent--;
+				}
+				else
+					exact = false;
+			}
+			else if (b == '.' && !point)
+				point = true;
+			else
+				break;
+		}
+		if (i < end && digits > 0 && (block[i] == 'e' || block[i] == 'E')){
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (block[i] == '-' || block[i] == '+')){
+				negativeExponent = block[i] == '-';
+				i++;
+			}
+			int value = 0, expDigits = 0;
+			for (; i < end && block[i] >= '0' && block[i] <= '9'; i++){
+				if (value < 1000)
+					value = 10*value + (block[i] - '0');
+				expDigits++;
+			}
+			exact &= expDigits > 0;
+			exponent += negativeExponent ? -value : value;
+		}
+		if (i < end || digits == 0 || !exact || mantissa > MAX_EXACT || exponent < -22 || exponent > 22)
+			return Double.parseDouble(decode(start, end)); // general case
+		double value = exponent >= 0 ? mantissa*POWERS_OF_TEN[exponent] : mantissa/POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * It obtains the index of a nominal value (or class label) through the table of the variable
+	 * @param variable the variable (the number of variables for the class)
+	 * @param start first byte of the value
+	 * @param end last byte of the value (not included)
+	 * @return the index of the nominal value (-1 if it is unknown)
+	 */
+	private byte intern(int variable, int start, int end){
+		Interner table = interners[variable];
+		int length = end - start;
+		int h = length;
+		for (int i = start; i < end; i++)
+			h = 31*h + block[i];
+		int mask = table.keys.length - 1;
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (table.keys[slot] != null){
+			byte[] key = table.keys[slot];
+			if (key.length == length){
+				int k = 0;
+				while (k < length && key[k] == block[start + k])
+					k++;
+				if (k == length)
+					return table.codes[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		// New value: it is looked up in the data base
+		String value = decode(start, end);
+		byte code;
+		if (variable < nominal.length)
+			code = dataBase.get(variable).getLabelIndex(value);
+		else
+			code = dataBase.getClassIndex(value);
+		byte[] key = new byte[length];
+		for (int k = 0; k < length; k++)
+			key[k] = block[start + k];
+		table.keys[slot] = key;
+		table.codes[slot] = code;
+		if (2*(++table.size) > table.keys.length)
+			rehash(table);
+		return code;
+	}
+
+	/**
+	 * Doubles the size of a table of nominal values
+	 * @param table the table
+	 */
+	private static void rehash(Interner table){
+		byte[][] keys = table.keys;
+		byte[] codes = table.codes;
+		table.keys = new byte[2*keys.length][];
+		table.codes = new byte[2*keys.length];
+		int mask = table.keys.length - 1;
+		for (int s = 0; s < keys.length; s++){
+			if (keys[s] == null)
+				continue;
+			int h = keys[s].length;
+			for (int k = 0; k < keys[s].length; k++)
+				h = 31*h + keys[s][k];
+			int slot = (h ^ (h >>> 16)) & mask;
+			while (table.keys[slot] != null)
+				slot = (slot + 1) & mask;
+			table.keys[slot] = keys[s];
+			table.codes[slot] = codes[s];
+		}
+	}
+
+	/**
+	 * It converts a value of the file into a String
+	 * @param start first byte of the value
+	 * @param end last byte of the value (not included)
+	 * @return the value
+	 */
+	private String decode(int start, int end){
+		int length = end - start;
+		if (scratch.length < length)
+			scratch = new byte[Math.max(length, 2*scratch.length)];
+		for (int k = 0; k < length; k++)
+			scratch[k] = block[start + k];
+		return new String(scratch, 0, length, charset);
+	}
+
+}
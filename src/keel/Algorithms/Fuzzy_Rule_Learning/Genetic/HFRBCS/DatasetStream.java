@@ -0,0 +1,131 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.io.IOException;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: DatasetStream</p>
+ *
+ * <p>Description: Sequential reader of a data file in chunks of a fixed number of examples, so that
+ * the whole dataset is never kept in memory. Each pass over the file is started with {@link #open()}, and
+ * the chunks (as datasets) are obtained with {@link #next()} until it returns null.</p>
+ *
+ * @version 1.0
+ */
+public class DatasetStream {
+
+	private String inputFile;
+	private DataBase dataBase;
+	private int chunkSize; // maximum number of examples of each chunk
+	private DataFileParser parser; // parser of the current pass (null if there is none)
+	private long numExamples; // number of examples read in the current pass
+	private long[] classNumExamples; // number of examples of each class read in the current pass
+
+	/**
+	 * Constructor with parameters
+	 * @param inputFile the data file
+	 * @param dataBase the data base
+	 * @param chunkSize maximum number of examples of each chunk
+	 */
+	public DatasetStream(String inputFile, DataBase dataBase, int chunkSize){
+		this.inputFile = inputFile;
+		this.dataBase = dataBase;
+		this.chunkSize = Math.max(1, chunkSize);
+		classNumExamples = new long[dataBase.getNumClasses()];
+	}
+
+	/**
+	 * It starts a new pass over the examples of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void open() throws IOException{
+		close();
+		parser = new DataFileParser(inputFile, dataBase);
+		numExamples = 0;
+		classNumExamples = new long[dataBase.getNumClasses()];
+	}
+
+	/**
+	 * It reads the next chunk of examples
+	 * @return the next chunk of examples, or null if the end of the file has been reached
+	 * @throws IOException if the file cannot be read
+	 */
+	public myDataset next() throws IOException{
+		if (parser == null)
+			return null;
+		myDataset chunk = new myDataset(parser, dataBase, chunkSize);
+		if (chunk.size() == 0){
+			close();
+			return null;
+		}
+		numExamples += chunk.size();
+		long[] counts = chunk.getClassNumExamples();
+		for (int j = 0; j < counts.length; j++)
+			classNumExamples[j] += counts[j];
+		return chunk;
+	}
+
+	/**
+	 * It finishes the current pass (if any)
+	 * @throws IOException if the file cannot be closed
+	 */
+	public void close() throws IOException{
+		if (parser != null){
+			parser.close();
+			parser = null;
+		}
+	}
+
+	/**
+	 * It returns the number of examples read in the current (or last) pass
+	 * @return the number of examples read
+	 */
+	public long size(){
+		return numExamples;
+	}
+
+	/**
+	 * It returns the number of examples of each class read in the current (or last) pass
+	 * @return the number of examples of each class
+	 */
+	public long[] getClassNumExamples(){
+		return classNumExamples;
+	}
+
+	/**
+	 * It returns the name of the data file
+	 * @return the name of the data file
+	 */
+	public String getFileName(){
+		return inputFile;
+	}
+
+}
@@ -0,0 +1,137 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: FitnessCache</p>
+ *
+ * <p>Description: Cache of the chromosomes evaluated by the genetic algorithm, indexed by their genes (a 64-bit
+ * hash of the packed genes, and the whole genes to solve collisions). When it is full, the least recently used
+ * chromosome is removed.</p>
+ *
+ * @version 1.0
+ */
+public class FitnessCache {
+
+	/**
+	 * Genes of a chromosome, with its hash value
+	 */
+	private static class Key {
+		long[] genes;
+		long hash;
+
+		Key(long[] genes){
+			this.genes = genes;
+			long h = genes.length;
+			for (int i = 0; i < genes.length; i++){
+				h = (h ^ genes[i]) * 0x9E3779B97F4A7C15L;
+				h ^= h >>> 29;
+			}
+			hash = h;
+		}
+
+		public int hashCode(){
+			return (int)(hash ^ (hash >>> 32));
+		}
+
+		public boolean equals(Object o){
+			Key k = (Key)o;
+			return hash == k.hash && Arrays.equals(genes, k.genes);
+		}
+	}
+
+	private LinkedHashMap<Key, Chromosome> map;
+	private long hits, misses;
+
+	/**
+	 * Creates an empty cache
+	 * @param capacity maximum number of chromosomes
+	 */
+	public FitnessCache(final int capacity){
+		map = new LinkedHashMap<Key, Chromosome>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, Chromosome> eldest){
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Looks for a chromosome with the same genes
+	 * @param c the chromosome
+	 * @return the chromosome of the cache with the same genes (null if there is none)
+	 */
+	public Chromosome get(Chromosome c){
+		Chromosome cached = map.get(new Key(c.getChromosome()));
+		if (cached != null)
+			hits++;
+		else
+			misses++;
+		return cached;
+	}
+
+	/**
+	 * Adds a chromosome to the cache (its genes must not be modified afterwards)
+	 * @param c the chromosome
+	 */
+	public void put(Chromosome c){
+		map.put(new Key(c.getChromosome()), c);
+	}
+
+	/**
+	 * Removes a chromosome from the cache
+	 * @param c the chromosome
+	 */
+	public void remove(Chromosome c){
+		map.remove(new Key(c.getChromosome()));
+	}
+
+	/**
+	 * It returns the number of chromosomes found in the cache
+	 * @return the number of hits
+	 */
+	public long getHits(){
+		return hits;
+	}
+
+	/**
+	 * It returns the number of chromosomes not found in the cache
+	 * @return the number of misses
+	 */
+	public long getMisses(){
+		return misses;
+	}
+
+}
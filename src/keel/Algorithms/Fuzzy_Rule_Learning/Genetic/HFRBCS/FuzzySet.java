@@ -172,8 +172,6 @@ public class FuzzySet implements Serializable{
         rightPoint = value;
     }
     
-    /*
-    @Override
     public void write(DataOutput out) throws IOException{
 		out.writeDouble(leftPoint);
 		out.writeDouble(midPoint);
@@ -181,13 +179,11 @@ public class FuzzySet implements Serializable{
 		out.writeByte(labelIndex);					
     }
 
-	@Override
 	public void readFields(DataInput in) throws IOException {
 		leftPoint = in.readDouble();
 		midPoint = in.readDouble();
 		rightPoint  = in.readDouble();
 		labelIndex = in.readByte();	
 	}
-	*/
 
 }
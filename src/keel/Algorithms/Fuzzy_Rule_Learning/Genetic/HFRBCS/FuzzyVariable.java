@@ -125,6 +125,15 @@ public class FuzzyVariable extends Variable {
 		return getMaxMembershipFuzzySet (Double.parseDouble(inputValue));
 	}
 
+	/**
+	 * Returns the variable label index corresponding to the input (already parsed) value
+	 * @param inputValue input value
+	 * @return Variable label index corresponding to the input value
+	 */
+	public byte getLabelIndex(double inputValue){
+		return getMaxMembershipFuzzySet (inputValue);
+	}
+
 	@Override
 	public FuzzyVariable clone(){
 		FuzzyVariable copy = new FuzzyVariable(this.getName());
@@ -182,7 +191,6 @@ public class FuzzyVariable extends Variable {
 		return this.mergePoints.clone();
 	}
 
-	/*
 	@Override
 	public void write(DataOutput out) throws IOException{
 		out.writeUTF(this.getName());
@@ -205,13 +213,16 @@ public class FuzzyVariable extends Variable {
 			fs.readFields(in);
 			fuzzySets[j] = fs;
 		}
+		fuzzySetsIni = new FuzzySet[nFuzz];
+		for (int j = 0; j < fuzzySets.length; j++){
+			fuzzySetsIni[j] = new FuzzySet(fuzzySets[j]);
+		}
 		int nMP = in.readInt();
 		mergePoints = new double[nMP];
 		for (int j = 0; j < mergePoints.length; j++){
 			mergePoints[j] = in.readDouble();					
 		}		
 	}
-	*/
 	
 	public double getMembershipDegree(byte label, double value){
 		return fuzzySets[label].getMembershipDegree(value);
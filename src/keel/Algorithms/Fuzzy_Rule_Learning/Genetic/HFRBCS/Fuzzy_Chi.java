@@ -49,7 +49,8 @@ public class Fuzzy_Chi {
 	String outputTr, outputTst, fileDB, fileRB, fileTrain, fileTest, fileVal, header;
 	byte nClasses, nLabels, combinationType, inferenceType, ruleWeight;
 	long seed;
-	int nEvaluations;
+	int nEvaluations, nThreads, evaluationMemory, nIslands, migrationInterval, racingSample, chunkSize;
+	boolean countCached, useCache;
 	myDataset train, val, test;
 	KnowledgeBase kb;
 
@@ -116,6 +117,38 @@ public class Fuzzy_Chi {
 			inferenceType = ADDITIVE_COMBINATION;
 		}
 		nEvaluations = Integer.parseInt(parameters.getParameter(idP++));
+		nThreads = 1; //Optional parameters
+		if (parameters.getNumParameters() > idP){
+			nThreads = Integer.parseInt(parameters.getParameter(idP++));
+		}
+		evaluationMemory = 256; //MB
+		if (parameters.getNumParameters() > idP){
+			evaluationMemory = Integer.parseInt(parameters.getParameter(idP++));
+		}
+		countCached = true;
+		if (parameters.getNumParameters() > idP){
+			countCached = parameters.getParameter(idP++).compareToIgnoreCase("NO") != 0;
+		}
+		nIslands = 1;
+		if (parameters.getNumParameters() > idP){
+			nIslands = Integer.parseInt(parameters.getParameter(idP++));
+		}
+		migrationInterval = 10; //generations
+		if (parameters.getNumParameters() > idP){
+			migrationInterval = Integer.parseInt(parameters.getParameter(idP++));
+		}
+		racingSample = 0; //full evaluation
+		if (parameters.getNumParameters() > idP){
+			racingSample = Integer.parseInt(parameters.getParameter(idP++));
+		}
+		chunkSize = 0; //the datasets are kept in memory
+		if (parameters.getNumParameters() > idP){
+			chunkSize = Integer.parseInt(parameters.getParameter(idP++));
+		}
+		useCache = false; //binary cache of the datasets (opt-in: it is written next to the data files)
+		if (parameters.getNumParameters() > idP){
+			useCache = parameters.getParameter(idP++).compareToIgnoreCase("YES") == 0;
+		}
 		
 
 	}
@@ -135,61 +168,126 @@ public class Fuzzy_Chi {
 
 			DataBase db = new DataBase();
 			try{
-				db = new DataBase(this.fileTrain,this.nLabels);
+				DataBase cached = useCache ? DataCache.readDataBase(this.fileTrain,this.nLabels) : null;
+				db = cached != null ? cached : new DataBase(this.fileTrain,this.nLabels);
 			}catch(Exception E){
 				System.err.println("Error building the DB");
 				E.printStackTrace();
 			}
 			Files.writeFile(fileDB, db.toString());
 			
-			//Reading data files
-			try{
-				train = new myDataset(fileTrain,db);
-			}
-			catch (Exception e) {
-				System.err.println("There was a problem while reading the input data-sets: " + e);
-			}
-			
-			//Finally we should fill the validation and test output files
-			try{
-				val = new myDataset(fileVal,db);
-				test = new myDataset(fileTest,db);
-			}
-			catch (Exception e) {
-				System.err.println("There was a problem while reading the input data-sets: " + e);
+			//Reading data files (in streaming mode, they are read in chunks when they are needed)
+			if (chunkSize <= 0){
+				try{
+					train = readDataset(fileTrain,db);
+				}
+				catch (Exception e) {
+					System.err.println("There was a problem while reading the input data-sets: " + e);
+				}
+				if (db.getClassNumExamples().length == 0){ //not given in the header: they are counted in the training set
+					db.setClassNumExamples(train.getClassNumExamples());
+				}
+				
+				//Finally we should fill the validation and test output files
+				try{
+					val = readDataset(fileVal,db);
+					test = readDataset(fileTest,db);
+				}
+				catch (Exception e) {
+					System.err.println("There was a problem while reading the input data-sets: " + e);
+				}
 			}
 
 			kb = new KnowledgeBase(db,fileRB);
+			kb.setNumThreads(nThreads);
+			kb.setTNorm(combinationType);
 
-			String infoRules = kb.generation(train); 
+			String infoRules;
+			if (chunkSize <= 0){
+				infoRules = kb.generation(train);
+			}
+			else{
+				DatasetStream trainStream = new DatasetStream(fileTrain,db,chunkSize);
+				try{
+					infoRules = kb.generation(trainStream);
+				}
+				catch (IOException e) {
+					System.err.println("There was a problem while reading the training set: " + e);
+					kb.close();
+					return;
+				}
+				if (db.getClassNumExamples().length == 0){ //not given in the header: they are counted in the training set
+					db.setClassNumExamples(trainStream.getClassNumExamples());
+				}
+			}
 			System.out.println("Info Rules: "+infoRules); 
 			
-			double accTst = doOutput(this.test, this.outputTst);
+			double accTst = doOutput(this.test, fileTest, this.outputTst);
 			int [] rules = kb.firedRules();
 			
-			double accTra = doOutput(this.val, this.outputTr);
+			double accTra = doOutput(this.val, fileVal, this.outputTr);
 			System.out.println("Accuracy obtained in training: "+accTra);
 			System.out.println("Total Number of fired rules:\t"+rules[0]);
 			System.out.println("Total Number of fired 1rules:\t"+rules[1]);
 			System.out.println("Accuracy obtained in test: "+accTst);
 			
-			Population pop = new Population(kb,train,nEvaluations);
-			pop.Generation();
-			pop.updateBest();
+			if (chunkSize > 0 && nEvaluations > 0){ //the rule selection needs the whole training set
+				try{
+					train = readDataset(fileTrain,db);
+				}
+				catch (Exception e) {
+					System.err.println("There was a problem while reading the input data-sets: " + e);
+				}
+			}
+			if (train == null){ //streaming mode without evaluations: the whole rule base is kept
+				System.out.println("Rule selection skipped");
+			}
+			else if (nIslands > 1){
+				IslandModel islands = new IslandModel(kb,train,nEvaluations,evaluationMemory*1024L*1024L,nIslands,migrationInterval,seed);
+				islands.setCountCachedEvaluations(countCached);
+				islands.setRacing(racingSample);
+				islands.Generation();
+				islands.updateBest();
+			}
+			else{
+				Population pop = new Population(kb,train,nEvaluations,evaluationMemory*1024L*1024L,new RandomStream(seed));
+				pop.setCountCachedEvaluations(countCached);
+				pop.setRacing(racingSample);
+				pop.Generation();
+				pop.updateBest();
+			}
 
-			accTst = doOutput(this.test, this.outputTst);
+			accTst = doOutput(this.test, fileTest, this.outputTst);
 			rules = kb.firedRules();
 			
-			accTra = doOutput(this.val, this.outputTr);
+			accTra = doOutput(this.val, fileVal, this.outputTr);
 			System.out.println("Accuracy obtained in training: "+accTra);
 			System.out.println("Total Number of fired rules:\t"+rules[0]);
 			System.out.println("Total Number of fired 1rules:\t"+rules[1]);
 			System.out.println("Accuracy obtained in test: "+accTst);
+			kb.close(); //the threads of the KB are no longer needed
 			System.out.println("Algorithm Finished");
 		}
 
 	}
 
+	/**
+	 * It reads a data file, from its binary cache if it is up to date (the cache is written otherwise)
+	 * @param inputFile String the name of the data file
+	 * @param db DataBase the data base (built from the header of the training file)
+	 *
+	 * @return the dataset
+	 */
+	private myDataset readDataset(String inputFile, DataBase db) throws Exception {
+		myDataset data = useCache ? DataCache.read(inputFile, db) : null;
+		if (data == null){
+			data = new myDataset(inputFile,db,nThreads);
+			if (useCache)
+				DataCache.write(inputFile, db, inputFile.equals(fileTrain), data);
+		}
+		return data;
+	}
+
 	/**
 	 * It generates the output file from a given dataset and stores it in a file
 	 * @param dataset myDataset input dataset
@@ -199,20 +297,54 @@ public class Fuzzy_Chi {
 	 */
 	private double doOutput(myDataset dataset, String filename) {
 		String output = new String("");
-		int hits, vars;
+		int hits;
 		hits = 0;
-		vars = dataset.getNumberVariables();
-		String [] input = new String[vars];
+		byte [] classOut = new byte[dataset.size()];
+		kb.classify(this.inferenceType, dataset, 0, dataset.size(), classOut);
 		for (int i = 0; i < dataset.size(); i++){
 			byte classIndex = 0;
-			input = dataset.getExample(i);
 			classIndex =  dataset.getClass(i);
-			byte classOut = kb.classify(this.inferenceType, input);
-			hits += classIndex == classOut ? 1 : 0;
-			output += classIndex +"\t"+classOut+"\n";
+			hits += classIndex == classOut[i] ? 1 : 0;
+			output += classIndex +"\t"+classOut[i]+"\n";
 		}
 		Files.writeFile(filename, output);
 		return 1.0*hits/dataset.size();
 	}
+
+	/**
+	 * It generates the output file from a given dataset and stores it in a file. If the dataset is not in memory,
+	 * it is read in chunks from its file (and the output file is written chunk by chunk)
+	 * @param dataset myDataset input dataset (null if it is not in memory)
+	 * @param inputFile String the name of the file of the dataset
+	 * @param filename String the name of the output file
+	 *
+	 * @return The classification accuracy
+	 */
+	private double doOutput(myDataset dataset, String inputFile, String filename) {
+		if (dataset != null)
+			return doOutput(dataset, filename);
+		long hits = 0, size = 0;
+		DatasetStream stream = new DatasetStream(inputFile, kb.getDataBase(), chunkSize);
+		Files.writeFile(filename, "");
+		try{
+			stream.open();
+			for (myDataset chunk = stream.next(); chunk != null; chunk = stream.next()){
+				StringBuilder output = new StringBuilder();
+				byte [] classOut = new byte[chunk.size()];
+				kb.classify(this.inferenceType, chunk, 0, chunk.size(), classOut);
+				for (int i = 0; i < chunk.size(); i++){
+					byte classIndex = chunk.getClass(i);
+					hits += classIndex == classOut[i] ? 1 : 0;
+					output.append(classIndex).append('\t').append(classOut[i]).append('\n');
+				}
+				Files.addToFile(filename, output.toString());
+				size += chunk.size();
+			}
+		}
+		catch (IOException e) {
+			System.err.println("There was a problem while reading the input data-sets: " + e);
+		}
+		return 1.0*hits/size;
+	}
 }
 
@@ -0,0 +1,208 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.core.RandomStream;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: IslandModel</p>
+ *
+ * <p>Description: Island model for the selection of rules: several CHC populations evolve in parallel, each one
+ * with its own random stream (split from the seed of the algorithm by island number). The islands
+ * run a fixed number of generations (an epoch), and then the best chromosome of each island replaces the worst
+ * chromosome of the next one (ring topology). The result only depends on the seed and the number of islands.</p>
+ *
+ * @version 1.0
+ */
+public class IslandModel {
+
+	Population[] islands;
+	KnowledgeBase kb;
+	myDataset train;
+	long memoryBudget;
+	int migrationInterval;
+
+	/**
+	 * Constructor with parameters
+	 * @param kb Rule base
+	 * @param train training set
+	 * @param nEvals number of evaluations (shared among the islands)
+	 * @param memoryBudget maximum size of the structures used for the evaluation (bytes)
+	 * @param nIslands number of islands
+	 * @param migrationInterval number of generations between migrations
+	 * @param seed seed of the random number generators
+	 */
+	public IslandModel(KnowledgeBase kb, myDataset train, int nEvals, long memoryBudget, int nIslands, int migrationInterval, long seed){
+		this.kb = kb;
+		this.train = train;
+		this.memoryBudget = memoryBudget;
+		this.migrationInterval = migrationInterval;
+		islands = new Population[nIslands];
+		RandomStream random = new RandomStream(seed);
+		for (int i = 0; i < nIslands; i++){
+			int evals = nEvals/nIslands + (i < nEvals % nIslands ? 1 : 0);
+			islands[i] = new Population(kb, train, evals, random.split(i));
+		}
+	}
+
+	/**
+	 * Sets whether the chromosomes whose fitness is found in the cache consume evaluations
+	 * @param countCached true if they consume evaluations (as if they were evaluated again), false otherwise
+	 */
+	public void setCountCachedEvaluations(boolean countCached){
+		for (int i = 0; i < islands.length; i++)
+			islands[i].setCountCachedEvaluations(countCached);
+	}
+
+	/**
+	 * Sets the racing evaluation of the islands
+	 * @param sampleSize size of the first sample (0 to evaluate all the chromosomes on the whole training set)
+	 */
+	public void setRacing(int sampleSize){
+		for (int i = 0; i < islands.length; i++)
+			islands[i].setRacing(sampleSize);
+	}
+
+	/**
+	 * It launches the evolutionary process
+	 */
+	public void Generation(){
+		AssociationMatrix matrix = AssociationMatrix.build(kb, train, memoryBudget);
+		if (matrix != null)
+			System.out.println("Association matrix: "+matrix.getNumEntries()+" entries ("+(matrix.getMemory()/1024)+" KB)");
+		else
+			System.out.println("The association matrix does not fit in memory: the association degrees are computed in each evaluation");
+		long matrixSize = matrix != null ? matrix.getMemory() : 0;
+		for (int i = 0; i < islands.length; i++)
+			islands[i].prepare(matrix, matrixSize + (memoryBudget - matrixSize)/islands.length);
+
+		System.out.println("Initilization of "+islands.length+" islands");
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for (int i = 0; i < islands.length; i++){
+			final Population island = islands[i];
+			tasks.add(new Callable<Boolean>(){
+				public Boolean call(){
+					island.start();
+					return true;
+				}
+			});
+		}
+		kb.invokeAll(tasks);
+		System.out.println("Initilization complete...");
+
+		boolean[] active = new boolean[islands.length];
+		for (int i = 0; i < islands.length; i++)
+			active[i] = true;
+		double bestFitness = 0;
+		boolean running = true;
+		while (running){
+			// Epoch: each active island runs migrationInterval generations
+			tasks.clear();
+			for (int i = 0; i < islands.length; i++){
+				final Population island = islands[i];
+				final boolean isActive = active[i];
+				tasks.add(new Callable<Boolean>(){
+					public Boolean call(){
+						boolean goOn = isActive;
+						for (int g = 0; g < migrationInterval && goOn; g++)
+							goOn = island.step();
+						return goOn;
+					}
+				});
+			}
+			List<Boolean> results = kb.invokeAll(tasks);
+			running = false;
+			int nEvals = 0;
+			for (int i = 0; i < islands.length; i++){
+				active[i] = results.get(i);
+				running |= active[i];
+				nEvals += Math.max(0, islands[i].nEvals);
+			}
+			double best = getBest().getFitness();
+			if (best > bestFitness){
+				bestFitness = best;
+				System.out.println("Evaluations remaining: "+nEvals+", Best Accuracy: "+bestFitness+".");
+			}
+
+			// Migration (ring): the best chromosome of each island replaces the worst one of the next active island
+			Chromosome[] migrants = new Chromosome[islands.length];
+			for (int i = 0; i < islands.length; i++)
+				migrants[i] = islands[i].getBest();
+			for (int i = 0; i < islands.length; i++){
+				int target = (i + 1) % islands.length;
+				while (!active[target] && target != i) //the finished islands are skipped
+					target = (target + 1) % islands.length;
+				if (running && target != i)
+					islands[target].immigrate(migrants[i]);
+			}
+		}
+
+		int deltaEvals = 0, racedOut = 0;
+		long hits = 0, misses = 0;
+		for (int i = 0; i < islands.length; i++){
+			deltaEvals += islands[i].deltaEvals;
+			racedOut += islands[i].racedOut;
+			if (islands[i].cache != null){
+				hits += islands[i].cache.getHits();
+				misses += islands[i].cache.getMisses();
+			}
+		}
+		if (islands[0].storeCorrect)
+			System.out.println("Chromosomes evaluated from their parent: "+deltaEvals);
+		if (islands[0].cache != null)
+			System.out.println("Fitness cache: "+hits+" hits, "+misses+" misses");
+		if (islands[0].order != null)
+			System.out.println("Chromosomes discarded by racing: "+racedOut);
+	}
+
+	/**
+	 * It returns the best chromosome of all the islands (the first island wins in case of ties)
+	 * @return the best chromosome
+	 */
+	private Chromosome getBest(){
+		Chromosome best = islands[0].getBest();
+		for (int i = 1; i < islands.length; i++)
+			if (islands[i].getBest().getFitness() > best.getFitness())
+				best = islands[i].getBest();
+		return best;
+	}
+
+	/**
+	 * Obtains the best RB
+	 */
+	public void updateBest(){
+		kb.updateSelected(getBest().getGenes());
+	}
+
+}
@@ -18,12 +18,15 @@
 package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.core.Files;
 
-import java.util.Map.Entry;
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -53,9 +56,9 @@ public class KnowledgeBase implements Serializable{
 	 * Rule Base
 	 */
 	private byte[][] ruleBase; // Antecedents of each rule
-	private ArrayList<Byte>[] rulesClasses; // Classes of each rule
+	private int[][] ruleColumns; // Antecedents by variable: ruleColumns[variable][rule] (matching degrees)
 	private float[][] matchingDegrees; // Matching degrees of the classes of each rule
-	private boolean[] ruleFired; // To check for fired rules
+	private CompiledModel.FiredRuleCounter ruleFired; // To check for fired rules (position in the rule base)
 
 	/**
 	 * Dataset
@@ -66,12 +69,9 @@ public class KnowledgeBase implements Serializable{
 	/**
 	 * Temporary structures
 	 */
-	private HashMap<ByteArrayWritable,ArrayList<Byte>> ruleBaseTmp; // Key: antecedents of the rule, Value: Classes of the rule
+	private RuleTable ruleTable; // Antecedents of the rules and number of examples of each class
 	private float[][] membershipDegrees; // Pre-computed membership degrees of a given example
-	private String[] input;
 	private byte classIndex;
-	private ByteArrayWritable newRule;
-	private ArrayList<Byte> classEntry;
 
 	private long repRulesNoClass;
 	private boolean [] uniqueM, uniqueRIndex;
@@ -79,6 +79,24 @@ public class KnowledgeBase implements Serializable{
 
 	private String fileRB;
 
+	/**
+	 * Compiled classifiers (built the first time they are needed)
+	 */
+	private transient volatile CompiledModel model; // Selected rules, recording the fired rules
+	private transient volatile CompiledModel fullModel; // All the rules (for the evaluation of any set of selected rules)
+
+	/**
+	 * Parallel execution
+	 */
+	private int numThreads = 1;
+	private transient ForkJoinPool pool;
+
+	/**
+	 * T-norm of the matching degrees (Fuzzy_Chi.MINIMUM or Fuzzy_Chi.PRODUCT)
+	 */
+	private int tNorm = Fuzzy_Chi.PRODUCT;
+	private transient MatchingKernel kernel; // Computation of the matching degrees of the learning stage
+
 	/**
 	 * Default constructor
 	 */
@@ -114,6 +132,8 @@ public class KnowledgeBase implements Serializable{
 	 */
 	public void addFuzzyRule (FuzzyRule newFuzzyRule){
 		ruleBaseOk.add(newFuzzyRule);
+		model = null;
+		fullModel = null;
 	}
 
 	/**
@@ -140,162 +160,161 @@ public class KnowledgeBase implements Serializable{
 	 * @return predicted class
 	 */
 	public byte classify (byte frm, String[] example){
-		if (frm == FRM_WINNING_RULE)
-			return (byte)FRM_WR(example)[0]; 
-		else
-			return (byte)FRM_AC(example)[0];
+		return classify(frm, dataBase.encodeExample(example));
 	}
 
 	/**
-	 * Classifies an example
+	 * Classifies a pre-encoded example with the selected rules (the fired rules are recorded). It can be called
+	 * from several threads at the same time
 	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
-	 * @param example input example
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
 	 * @return predicted class
 	 */
-	public byte classifyOK (byte frm, double[] example){
-		if (frm == FRM_WINNING_RULE)
-			return FRM_WR_Class(example); 
-		else
-			return FRM_AC_Class(example);
+	public byte classify (byte frm, double[] example){
+		return getModel().classify(frm, example);
 	}
 
 	/**
-	 * Classifies an example
+	 * Classifies a pre-encoded example with a given set of selected rules. It does not modify the KB
+	 * (fired rules are not recorded), so it can be called from several threads at the same time
 	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
-	 * @param example input example
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param selected whether each rule is selected (true) or not (false)
+	 * @param ws workspace of the current thread (see newWorkspace)
 	 * @return predicted class
 	 */
-	public double [] classifyDegrees (byte frm, String[] example){
-		if (frm == FRM_WINNING_RULE)
-			return FRM_WR(example);
-		else
-			return FRM_AC(example);
+	public byte classify (byte frm, double[] example, boolean[] selected, CompiledModel.Workspace ws){
+		return getFullModel().classify(frm, example, selected, ws);
 	}
 
 	/**
-	 * Additive Combination Fuzzy Reasoning Method
-	 * @param example input example
-	 * @return a double array where [0] is the predicted class index and [1] is the confidence degree
+	 * Classifies a range of examples of a dataset with the selected rules (the fired rules are recorded). It can be
+	 * called from several threads at the same time
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param data the dataset
+	 * @param from first example
+	 * @param to last example (not included)
+	 * @param classes output predicted class of each example (position i-from for the i-th example)
 	 */
-	private double[] FRM_AC (String[] example){
-
-		double[] output = new double[dataBase.getNumClasses()+1];
-		output[0] = dataBase.getMostFrequentClass(); // Default class
-		for (int i = 1; i < output.length; i++)
-			output[i] = 0.0; // Default confidence
+	public void classify (byte frm, myDataset data, int from, int to, byte[] classes){
+		getModel().classify(frm, data, from, to, classes, null);
+	}
 
-		double[] classDegree = new double[dataBase.getNumClasses()];
-		for (byte i = 0; i < classDegree.length; i++) classDegree[i] = 0.0;
+	/**
+	 * Classifies a list of examples of a dataset with a given set of selected rules. It does not modify the KB
+	 * (fired rules are not recorded), so it can be called from several threads at the same time
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param data the dataset
+	 * @param order list of examples to be classified (null to classify the examples in the range)
+	 * @param from first position of the range
+	 * @param to last position of the range (not included)
+	 * @param selected whether each rule is selected (true) or not (false)
+	 * @param classes output predicted class of each example (position p-from for the p-th position)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 */
+	public void classify (byte frm, myDataset data, int[] order, int from, int to, boolean[] selected, byte[] classes, CompiledModel.Workspace ws){
+		getFullModel().classify(frm, data, order, from, to, selected, classes, null, ws);
+	}
 
-		double degree;
+	/**
+	 * Classifies an example
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example
+	 * @return predicted class
+	 */
+	public double [] classifyDegrees (byte frm, String[] example){
+		return classifyDegrees(frm, dataBase.encodeExample(example));
+	}
 
-		// Compute the confidence of each class
-		//for (FuzzyRule rule:ruleBaseOk) {
-		for (int i = 0; i <  ruleBaseOk.size(); i++) {
-			if(selected[i]){
-				FuzzyRule rule = ruleBaseOk.get(i);	
-				degree = this.computeAssociationDegree(example, rule);
-				classDegree[rule.getClassIndex()] += degree;
-			}
-		}
-		for (int i = 1; i < output.length; i++) //Normalize??
-			output[i] = classDegree[i-1]; 
-
-		// Get the class with the highest confidence
-		for (byte i = 0; i < classDegree.length; i++) {
-			if (classDegree[i] > output[1]) {
-				output[0] = i;
-				output[1] = classDegree[i];
-			}
-		}
-		output[0] = maxIndex(classDegree);
+	/**
+	 * Classifies a pre-encoded example
+	 * @param frm fuzzy reasoning method to be used (0: winning rule, 1: additive combination)
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @return a double array where [0] is the predicted class index and [i+1] is the degree of the i-th class
+	 */
+	public double [] classifyDegrees (byte frm, double[] example){
+		return getModel().classifyDegrees(frm, example);
+	}
 
-		return output;
+	/**
+	 * Compiles the selected rules into a read-only classifier that can be shared among threads
+	 * @return the compiled classifier (fired rules are not recorded)
+	 */
+	public CompiledModel compile(){
+		return new CompiledModel(this, selected, null);
+	}
 
+	/**
+	 * Compiles a set of rules into a read-only classifier that can be shared among threads
+	 * @param selected whether each rule is included (null to include all of them)
+	 * @param sink receiver of the fired rules, as positions in the rule base (null if they are not recorded)
+	 * @return the compiled classifier
+	 */
+	public CompiledModel compile(boolean[] selected, CompiledModel.FiredRuleSink sink){
+		return new CompiledModel(this, selected, sink);
 	}
 
 	/**
-	 * Winning Rule Fuzzy Reasoning Method
-	 * @param example input example
-	 * @return a double array where [0] is the predicted class index and [1] is the confidence degree
-	 */
-	private double[] FRM_WR (String[] example){
-
-		double[] output = new double[dataBase.getNumClasses()+1];
-		int[] indexR = new int[dataBase.getNumClasses()];
-		output[0] = dataBase.getMostFrequentClass(); // Default class
-		for (int i = 1; i < output.length; i++)
-			output[i] = 0.0; // Default confidence
-
-		double degree;
-		int index = 0;
-
-		// Get the class with the rule with highest association degree
-		//for (FuzzyRule rule:ruleBaseOk) {
-		for (int i = 0; i <  ruleBaseOk.size(); i++) {
-			if(selected[i]){
-				FuzzyRule rule = ruleBaseOk.get(i);
-				degree = this.computeAssociationDegree(example,rule);
-				if (output[rule.getClassIndex()+1] < degree){
-					output[rule.getClassIndex()+1] = degree;
-					indexR[rule.getClassIndex()] = index;
-				}
-				index++;
-			}
-		}
-		//Truncation
-
-		int indexMax = 1;
-		double max = output[1];
-		for (int i = 2; i < output.length;i++){
-			if (output[i] > max){
-				max = output[i];
-				output[indexMax] = 0;
-				indexMax = i;
-			}else{
-				output[i] = 0;
+	 * Returns the classifier of the selected rules used by the KB (it is compiled the first time)
+	 * @return the classifier of the selected rules
+	 */
+	private CompiledModel getModel(){
+		CompiledModel m = model;
+		if (m == null){
+			synchronized (this){
+				if (model == null)
+					model = compile(selected, ruleFired);
+				m = model;
 			}
 		}
-		//indexMax-1 ; //
-		ruleFired[indexR[indexMax-1]] = true;
-		output[0] = indexMax-1; //maxIndex(output)-1; //output has one more element than number of classes
-
-		return output;	
+		return m;
 	}
 
 	/**
-	 * Winning Rule Fuzzy Reasoning Method
-	 * @param example input example
-	 * @return a double array where [0] is the predicted class index and [1] is the confidence degree
+	 * Returns the classifier with all the rules of the KB (it is compiled the first time)
+	 * @return the classifier with all the rules
 	 */
-	private byte FRM_WR_Class (double [] example){
-
-		byte output = dataBase.getMostFrequentClass(); // Default class
-		double degree, max_degree;
-		degree = max_degree = 0;
-
-		// Get the class with the rule with highest association degree
-		//for (FuzzyRule rule:ruleBase) {
-		for (int i = 0; i <  ruleBaseOk.size(); i++) {
-			degree = this.computeAssociationDegreeD(example,ruleBaseOk.get(i));
-			if (max_degree < degree){
-				max_degree = degree;
-				output = ruleBaseOk.get(i).getClassIndex(); 
+	private CompiledModel getFullModel(){
+		CompiledModel m = fullModel;
+		if (m == null){
+			synchronized (this){
+				if (fullModel == null)
+					fullModel = compile(null, null);
+				m = fullModel;
 			}
 		}
-		return output;
+		return m;
+	}
 
+	/**
+	 * Creates the temporary structures needed to classify with any set of selected rules
+	 * @return a new workspace
+	 */
+	public CompiledModel.Workspace newWorkspace(){
+		return getFullModel().newWorkspace();
 	}
 
 	/**
-	 * Winning Rule Fuzzy Reasoning Method
-	 * @param example input example
-	 * @return a double array where [0] is the predicted class index and [1] is the confidence degree
+	 * Computes the association degree of the input example with all the rules (selected or not) that can match it,
+	 * in the same way as the fuzzy reasoning methods
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param ws workspace of the current thread (see newWorkspace)
+	 * @param rules output ids of the rules with association degree greater than zero, in ascending order (at least size() positions)
+	 * @param degrees output association degrees of these rules (at least size() positions)
+	 * @return the number of rules with association degree greater than zero
 	 */
-	private byte FRM_AC_Class (double [] example){
-		return dataBase.getMostFrequentClass(); // Default class
+	public int computeAssociationDegrees (double[] example, CompiledModel.Workspace ws, int[] rules, float[] degrees){
+		return getFullModel().computeAssociationDegrees(example, ws, rules, degrees);
 	}
 
+	/**
+	 * It returns the class of a rule
+	 * @param rule the id of the rule
+	 * @return the class index of the rule
+	 */
+	public byte getClassIndex (int rule){
+		return ruleBaseOk.get(rule).getClassIndex();
+	}
 
 	/**
 	 * Returns the association degree of the input example with this rule
@@ -303,53 +322,32 @@ public class KnowledgeBase implements Serializable{
 	 * @return association degree of the input example with this rule
 	 */
 	public float computeAssociationDegree (String[] example, FuzzyRule r){
-		return computeMatchingDegree(example,r)*r.getRuleWeight();
+		return computeAssociationDegree(dataBase.encodeExample(example),r);
 	}
 
 	public float computeMatchingDegree (String[] example, FuzzyRule r){
-
-		float matching = 1.0f;
-		for (int i = 0; (i < example.length)&&(matching > 0); i++){
-			// If it is a nominal value and it is not equal to the antecedent, then there is no matching
-			if (dataBase.get(i) instanceof NominalVariable){
-				if (!((NominalVariable)dataBase.get(i)).getNominalValue(r.getAntecedent(i)).contentEquals(example[i]))
-					return 0.0f;
-			}
-			else
-				matching *=  ((FuzzyVariable)dataBase.get(i)).getMembershipDegree(r.getAntecedent(i), Double.parseDouble(example[i]));
-		}
-		return matching;
-
+		return computeMatchingDegree(dataBase.encodeExample(example),r);
 	}
 
 	/**
-	 * Returns the association degree of the input example with this rule
-	 * @param example input example
+	 * Returns the association degree of the input (pre-encoded) example with this rule
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
 	 * @return association degree of the input example with this rule
 	 */
-	public float computeAssociationDegreeD (double[] example, FuzzyRule r){
-		return computeMatchingDegreeD(example,r)*r.getRuleWeight();
+	public float computeAssociationDegree (double[] example, FuzzyRule r){
+		return computeMatchingDegree(example,r)*r.getRuleWeight();
 	}
 
-	public float computeMatchingDegreeD (double[] example, FuzzyRule r){
-
-		float matching = 1.0f;
-		for (int i = 0; (i < example.length)&&(matching > 0); i++){
-			// If it is a nominal value and it is not equal to the antecedent, then there is no matching
-			if (dataBase.get(i) instanceof NominalVariable){
-				int valor = (int)example[i];
-				if (!((NominalVariable)dataBase.get(i)).getNominalValue(r.getAntecedent(i)).contentEquals(String.valueOf(valor))){
-					return 0.0f;
-				}
-			}
-			else
-				matching *=  ((FuzzyVariable)dataBase.get(i)).getMembershipDegree(r.getAntecedent(i), example[i]);
-		}
-		return matching;
-
+	/**
+	 * Returns the matching degree of the input (pre-encoded) example with this rule (with the t-norm of the KB). The
+	 * membership degrees are computed in the workspace of the current thread, so it can be called concurrently
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @return matching degree of the input example with this rule
+	 */
+	public float computeMatchingDegree (double[] example, FuzzyRule r){
+		return getFullModel().computeMatchingDegree(example, r.getAntecedent());
 	}
 
-
 	/**
 	 * Returns the rule base of this classifier
 	 * @return rule base of this classifier
@@ -392,6 +390,7 @@ public class KnowledgeBase implements Serializable{
 
 	public KnowledgeBase clone(){
 		KnowledgeBase kb = new KnowledgeBase(this.dataBase,this.fileRB);
+		kb.tNorm = this.tNorm;
 		for (FuzzyRule fr:ruleBaseOk){
 			kb.addFuzzyRule(fr.clone());
 		}
@@ -399,48 +398,77 @@ public class KnowledgeBase implements Serializable{
 	}
 
 	private void computeMatchingDegreesRule(){
-		matchingDegrees = new float[ruleBaseTmp.size()][dataBase.getNumClasses()];
-		for (int i = 0; i < ruleBaseTmp.size(); i++)
+		matchingDegrees = new float[ruleTable.size()][dataBase.getNumClasses()];
+		for (int i = 0; i < ruleTable.size(); i++)
 			for (int j = 0; j < dataBase.getNumClasses(); j++)
 				matchingDegrees[i][j] = 0.0f;
-		membershipDegrees = new float[dataBase.getNumVariables()][dataBase.getNumLinguisticLabels()];
-		rulesClasses = new ArrayList[ruleBaseTmp.size()];
-		ruleBase = new byte[ruleBaseTmp.size()][dataBase.getNumVariables()];
-		uniqueM = new boolean[ruleBaseTmp.size()];
-		Iterator<Entry<ByteArrayWritable,ArrayList<Byte>>> iterator = ruleBaseTmp.entrySet().iterator();
-		Entry<ByteArrayWritable,ArrayList<Byte>> ruleEntry;
-		int i = 0;
-		while (iterator.hasNext()){
-			ruleEntry = iterator.next();
-			ruleBase[i] = ruleEntry.getKey().getBytes(); // Antecedents of the rule
-			rulesClasses[i] = ruleEntry.getValue(); // Classes of the rule (aqui hay -1!)
-			if (ruleEntry.getValue().size() == 1){ 
+		membershipDegrees = dataBase.newMembershipDegrees();
+		ruleBase = new byte[ruleTable.size()][];
+		ruleColumns = new int[dataBase.getNumVariables()][ruleTable.size()];
+		uniqueM = new boolean[ruleTable.size()];
+		for (int i = 0; i < ruleTable.size(); i++){
+			ruleBase[i] = ruleTable.getAntecedents(i); // Antecedents of the rule
+			for (int j = 0; j < ruleColumns.length; j++)
+				ruleColumns[j][i] = ruleBase[i][j];
+			if (ruleTable.getTotalCount(i) == 1){ 
 				uniqueM[i] = true;
 			}
-			i++;
+			repRulesNoClass += ruleTable.getNumClasses(i) - 1;
 		}
 	}
 
-	private void computeMatchingDegreesAll(myDataset train){
-		byte label;
-		for (int i = 0; i < train.size(); i++){
+	private void computeMatchingDegreesAll(myDataset train, final RuleIndex index){
+		if (numThreads <= 1){
+			computeMatchingDegreesAll(train, index, membershipDegrees, 0, ruleBase.length);
+			return;
+		}
+		// Each task computes the matching degrees of a block of rules with all the examples. Every rule
+		// accumulates the examples in the same order as the sequential version, so the sums (and the rule weights)
+		// do not depend on the number of threads
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		int nWords = index.getNumWords();
+		int nBlocks = Math.min(4*numThreads, Math.max(1, nWords));
+		for (int b = 0; b < nBlocks; b++){
+			final int fromRule = (int)((long)nWords*b/nBlocks) << 6;
+			final int toRule = Math.min(ruleBase.length, (int)((long)nWords*(b+1)/nBlocks) << 6);
+			final myDataset data = train;
+			tasks.add(new Callable<Object>(){
+				public Object call(){
+					float[][] membership = dataBase.newMembershipDegrees();
+					computeMatchingDegreesAll(data, index, membership, fromRule, toRule);
+					return null;
+				}
+			});
+		}
+		invokeAll(tasks);
+	}
 
-			input = new String[dataBase.getNumVariables()];
-			classIndex = 0;
+	/**
+	 * Computes the matching degree of all the examples with a block of rules (accumulated in matchingDegrees)
+	 * @param train training set
+	 * @param index index of the rule base
+	 * @param membership temporary structure for the membership degrees of each example
+	 * @param fromRule first rule of the block (multiple of 64)
+	 * @param toRule last rule of the block, not included (multiple of 64, or the number of rules)
+	 */
+	private void computeMatchingDegreesAll(myDataset train, RuleIndex index, float[][] membership, int fromRule, int toRule){
+		double[] input = new double[dataBase.getNumVariables()];
+		RuleIndex.Workspace ws = index.newWorkspace();
+		int[] candidates = ws.getIds();
+		float[] degrees = new float[index.size()];
+		MatchingKernel kernel = getKernel();
+		int[] labels = new int[kernel.getLanes()];
+		for (int i = 0; i < train.size(); i++){
 
-			input = train.getExample(i);
-			classIndex =  train.getClass(i);
-			// Compute the membership degree of the current value to all linguistic labels
-			for (int j = 0; j < dataBase.getNumVariables(); j++) {
-				if (dataBase.get(j) instanceof FuzzyVariable)
-					for (label = 0; label < dataBase.getNumLinguisticLabels(); label++)
-						membershipDegrees[j][label] = dataBase.computeMembershipDegree(j,label,input[j]);
-			}
-			// Compute the matching degree of the example with all rules
-			for (int j = 0; j < ruleBase.length; j++){
-				matchingDegrees[j][classIndex] += dataBase.computeMatchingDegree(
-						membershipDegrees, ruleBase[j], input);
-			}
+			train.getEncodedExample(i, input);
+			byte classIndex =  train.getClass(i);
+			// Compute the membership degree of the current value to all linguistic labels (and nominal values)
+			dataBase.computeMembershipDegrees(input, membership);
+			// Compute the matching degree of the example with the rules that can match it
+			int nCandidates = index.getCandidates(membership, input, ws, fromRule, toRule);
+			kernel.compute(membership, ruleColumns, candidates, 0, nCandidates, degrees, labels);
+			for (int c = 0; c < nCandidates; c++)
+				matchingDegrees[candidates[c]][classIndex] += degrees[c];
 		}
 
 	}
@@ -454,7 +482,7 @@ public class KnowledgeBase implements Serializable{
 			sum += matchingDegrees[i][j];
 		}
 		for (int j = 0; j < matchingDegrees[i].length; j++){
-			if (rulesClasses[i].contains((byte)j)){
+			if (ruleTable.getCount(i, j) > 0){
 				sumOthers = sum-matchingDegrees[i][j];
 				currentRW = (matchingDegrees[i][j] - sumOthers) / sum; //P-CF
 				if (currentRW > ruleWeight){
@@ -466,38 +494,151 @@ public class KnowledgeBase implements Serializable{
 		return ruleWeight;
 	}
 
-	public String generation(myDataset train){
-		ruleBaseTmp = new HashMap<ByteArrayWritable,ArrayList<Byte>>();
-		repRulesNoClass = 0;
+	/**
+	 * Generates the rules of a range of examples of the training set
+	 * @param train training set
+	 * @param from first example
+	 * @param to last example (not included)
+	 * @return the table with the rules (antecedents and number of examples of each class)
+	 */
+	private RuleTable generateRules(myDataset train, int from, int to){
+		RuleTable table = new RuleTable(dataBase);
+		double[] input = new double[dataBase.getNumVariables()];
+		long[] key = new long[table.getStride()];
+		for (int i = from; i < to; i++){
 
-		System.err.println("Rule Generation");
-		for (int i = 0; i < train.size(); i++){
+			train.getEncodedExample(i, input);
 
-			input = new String[dataBase.getNumVariables()];
-			classIndex = 0;
+			// Generate a new fuzzy rule (or add the example to an existing one)
+			byte[] antecedents = dataBase.getRuleFromExample(input);
+			table.add(antecedents, train.getClass(i), key);
+		}
+		return table;
+	}
 
-			input = train.getExample(i);
-			classIndex =  train.getClass(i);			
+	/**
+	 * Sets the t-norm used to compute the matching degrees (rule weights and fuzzy reasoning methods)
+	 * @param tNorm the t-norm (Fuzzy_Chi.MINIMUM or Fuzzy_Chi.PRODUCT)
+	 */
+	public synchronized void setTNorm(int tNorm){
+		this.tNorm = tNorm;
+		kernel = null;
+		model = null; //the classifiers are compiled again with the new t-norm
+		fullModel = null;
+	}
 
-			// Generate a new fuzzy rule
-			byte[] antecedents = dataBase.getRuleFromExample(input);
+	/**
+	 * It returns the t-norm used to compute the matching degrees
+	 * @return the t-norm (Fuzzy_Chi.MINIMUM or Fuzzy_Chi.PRODUCT)
+	 */
+	public int getTNorm(){
+		return tNorm;
+	}
 
-			newRule = new ByteArrayWritable(antecedents);
-			if (ruleBaseTmp.containsKey(newRule)){
-				classEntry = ruleBaseTmp.get(newRule);
-				if (!classEntry.contains(classIndex)){
-					classEntry.add(classIndex);
-					repRulesNoClass++;
-				}else if (!classEntry.contains((byte)100)){ //repeated rule
-					byte valor = 100;
-					classEntry.add(valor);
-				}
-			}else{
-				classEntry = new ArrayList<Byte>(); //Unique rule (although it can be generated later on)
-				classEntry.add(classIndex);
-				ruleBaseTmp.put(newRule, classEntry);
+	/**
+	 * Returns the kernel used to compute the matching degrees in the learning stage
+	 * @return the matching kernel
+	 */
+	private synchronized MatchingKernel getKernel(){
+		if (kernel == null)
+			kernel = MatchingKernel.getKernel(tNorm);
+		return kernel;
+	}
+
+	/**
+	 * Sets the number of threads used in the learning stage
+	 * @param numThreads number of threads (1 for sequential execution)
+	 */
+	public synchronized void setNumThreads(int numThreads){
+		this.numThreads = numThreads;
+		close(); //the pool of the previous number of threads
+	}
+
+	/**
+	 * Shuts down the thread pool of this KB. It must be called once the KB is no longer used for learning (the
+	 * pool is created again if it is needed)
+	 */
+	public synchronized void close(){
+		if (pool != null){
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * It returns the thread pool of this KB (it is created the first time)
+	 * @return the thread pool
+	 */
+	private synchronized ForkJoinPool getPool(){
+		if (pool == null)
+			pool = new ForkJoinPool(numThreads);
+		return pool;
+	}
+
+	/**
+	 * It returns the number of threads used in the learning stage
+	 * @return the number of threads
+	 */
+	public int getNumThreads(){
+		return numThreads;
+	}
+
+	/**
+	 * Runs the tasks in the thread pool of this KB and waits for them
+	 * @param tasks the tasks to be run
+	 * @return the results of the tasks (in the same order)
+	 */
+	<T> List<T> invokeAll(List<Callable<T>> tasks){
+		List<T> results = new ArrayList<T>();
+		try{
+			for (Future<T> future : getPool().invokeAll(tasks))
+				results.add(future.get());
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}catch(ExecutionException e){
+			throw new RuntimeException(e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Generates the rules of the training set, using several threads if possible
+	 * @param train training set
+	 * @return the table with the rules (antecedents and number of examples of each class)
+	 */
+	private RuleTable generateRules(myDataset train){
+		RuleTable ruleTable;
+		if (numThreads <= 1){
+			ruleTable = generateRules(train, 0, train.size());
+		}
+		else{
+			// Each partition of the training set builds its own table. They are merged in the order of the partitions,
+			// so the rules are numbered in order of first appearance whatever the number of threads is
+			List<Callable<RuleTable>> tasks = new ArrayList<Callable<RuleTable>>();
+			int nPartitions = Math.min(4*numThreads, Math.max(1, train.size()));
+			for (int p = 0; p < nPartitions; p++){
+				final int from = (int)((long)train.size()*p/nPartitions);
+				final int to = (int)((long)train.size()*(p+1)/nPartitions);
+				final myDataset data = train;
+				tasks.add(new Callable<RuleTable>(){
+					public RuleTable call(){
+						return generateRules(data, from, to);
+					}
+				});
 			}
+			ruleTable = new RuleTable(dataBase);
+			for (RuleTable partial : invokeAll(tasks))
+				ruleTable.addAll(partial);
 		}
+		return ruleTable;
+	}
+
+	public String generation(myDataset train){
+		repRulesNoClass = 0;
+
+		System.err.println("Rule Generation");
+		ruleTable = generateRules(train);
 
 		System.err.println("Computing Matching Degrees Rule");
 		/**
@@ -509,11 +650,51 @@ public class KnowledgeBase implements Serializable{
 		/**
 		 *  Compute the matching degree of all the examples with all the rules
 		 */
-		computeMatchingDegreesAll(train);
+		computeMatchingDegreesAll(train, new RuleIndex(ruleBase, dataBase));
 
 		//System.err.println("Rule Base: "+ruleBase.length);
 
+		return computeRuleWeights();
+	}
+
+	/**
+	 * It generates the rule base reading the training set in chunks (two passes over the file: one to generate
+	 * the rules and another one to compute their matching degrees), so that only the rules are kept in memory.
+	 * The rule base is the same as the one obtained with the whole training set in memory
+	 * @param train training set (data file read in chunks)
+	 * @return information about the rules generated
+	 * @throws IOException if the training file cannot be read
+	 */
+	public String generation(DatasetStream train) throws IOException{
+		repRulesNoClass = 0;
+
+		System.err.println("Rule Generation");
+		// The tables of the chunks are merged in order, so the rules are numbered in order of first appearance
+		ruleTable = new RuleTable(dataBase);
+		train.open();
+		for (myDataset chunk = train.next(); chunk != null; chunk = train.next())
+			ruleTable.addAll(generateRules(chunk));
+
+		System.err.println("Computing Matching Degrees Rule");
+		computeMatchingDegreesRule();
+
+		System.err.println("Computing Matching Degrees All");
+		// Every rule accumulates the examples in the same order as with the whole training set in memory
+		RuleIndex index = new RuleIndex(ruleBase, dataBase);
+		train.open();
+		for (myDataset chunk = train.next(); chunk != null; chunk = train.next())
+			computeMatchingDegreesAll(chunk, index);
+
+		return computeRuleWeights();
+	}
+
+	/**
+	 * It computes the weight of the rules, keeps those with a positive weight and writes them in the RB file
+	 * @return information about the rules generated
+	 */
+	private String computeRuleWeights(){
 		System.err.println("Computing Rule Weights");
+		ruleColumns = null; //only needed for the matching degrees
 
 		String rbString = new String("");
 
@@ -535,14 +716,8 @@ public class KnowledgeBase implements Serializable{
 					uniqueR++;
 					uniqueRIndex[ruleBaseOk.size()-1] = true;
 				}
-				if(rulesClasses[i].contains((byte)100)){
-					if (rulesClasses[i].size() > 2){
-						dobleCqt++;
-					}
-				}else{
-					if (rulesClasses[i].size() > 1){
-						dobleCqt++;
-					}
+				if (ruleTable.getNumClasses(i) > 1){
+					dobleCqt++;
 				}
 			}
 		}
@@ -550,7 +725,9 @@ public class KnowledgeBase implements Serializable{
 		for (int i = 0; i < selected.length; i++){
 			selected[i] = true;
 		}
-		ruleFired = new boolean[ruleBaseOk.size()]; //check fired rules
+		model = null; //the classifiers are compiled again for the new rule base
+		fullModel = null;
+		ruleFired = new CompiledModel.FiredRuleCounter(ruleBaseOk.size()); //check fired rules
 		Files.writeFile(fileRB, rbString);
 
 		//CAMBIAR				
@@ -571,14 +748,16 @@ public class KnowledgeBase implements Serializable{
 
 	/**
 	 * It obtains the information about fired rules, whether they are related to repeated rules (supp > 1) or unique rules (supp = 1). 
+	 * Only the classifications made with the selected rules since they were last updated are taken into account
+	 * (the evaluations of the rule selection are not)
 	 * @return The number of rules fired for "standard" rules and "unique" rules
 	 */
 	public int[] firedRules(){
 		int [] fired = new int[2];
-		for (int i = 0; i < this.ruleFired.length; i++){
-			fired[0] += ruleFired[i] ? 1:0;
+		for (int i = 0; i < this.ruleFired.size(); i++){
+			fired[0] += ruleFired.getCount(i) > 0 ? 1:0;
 			if (uniqueRIndex[i])
-				fired[1] += ruleFired[i] ? 1:0;
+				fired[1] += ruleFired.getCount(i) > 0 ? 1:0;
 		}
 		return fired;
 	}
@@ -589,6 +768,8 @@ public class KnowledgeBase implements Serializable{
 	 */
 	public void updateSelected(boolean [] selected){
 		this.selected = selected.clone();
+		ruleFired = new CompiledModel.FiredRuleCounter(ruleBaseOk.size()); //the fired rules of the new selection
+		model = null;
 	}
 
 
@@ -0,0 +1,198 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: MatchingKernel</p>
+ *
+ * <p>Description: Computation of the matching degree of the rules with an example (t-norm of the membership
+ * degrees of the example to the antecedents of the rule). The membership degrees of the example are given for every
+ * linguistic label and nominal value (see DataBase.computeMembershipDegrees), so all the variables are treated
+ * alike. There is a kernel for each t-norm, and a vectorised version of them (VectorMatchingKernel) is used when
+ * it is in the classpath and the Vector API (module jdk.incubator.vector) is available.</p>
+ *
+ * <p>The Vector API is an incubator module, so the vectorised kernels are kept in their own source folder
+ * (src-vector) and the sources in src compile with a plain javac. To use them, compile that folder on top of the
+ * other classes and add the module when running:
+ * <pre>
+ * javac -d classes $(find src -name '*.java')
+ * javac --add-modules jdk.incubator.vector -cp classes -d classes $(find src-vector -name '*.java')
+ * java --add-modules jdk.incubator.vector -cp classes keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS.Main param.txt
+ * </pre>
+ * Otherwise the scalar kernels are used, with the same results.</p>
+ *
+ * @version 1.0
+ */
+public abstract class MatchingKernel {
+
+	private static final String VECTOR_KERNEL = "keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS.VectorMatchingKernel";
+
+	/**
+	 * Product t-norm
+	 */
+	static class Product extends MatchingKernel {
+
+		public float compute(float[][] membership, byte[] antecedent){
+			float matching = 1.0f;
+			for (int j = 0; j < membership.length && matching > 0; j++)
+				matching *= membership[j][antecedent[j]];
+			return matching;
+		}
+
+		public void compute(float[][] membership, int[][] columns, int[] rules, int from, int to, float[] degrees, int[] labels){
+			for (int c = from; c < to; c++){
+				int rule = rules[c];
+				float matching = 1.0f;
+				for (int j = 0; j < columns.length && matching > 0; j++)
+					matching *= membership[j][columns[j][rule]];
+				degrees[c] = matching;
+			}
+		}
+
+		public void compute(float[][] membership, int[][] columns, int fromRule, int toRule, float[] degrees){
+			for (int i = fromRule; i < toRule; i++){
+				float matching = 1.0f;
+				for (int j = 0; j < columns.length && matching > 0; j++)
+					matching *= membership[j][columns[j][i]];
+				degrees[i - fromRule] = matching;
+			}
+		}
+
+		public String toString(){
+			return "product";
+		}
+	}
+
+	/**
+	 * Minimum t-norm
+	 */
+	static class Minimum extends MatchingKernel {
+
+		public float compute(float[][] membership, byte[] antecedent){
+			float matching = 1.0f;
+			for (int j = 0; j < membership.length && matching > 0; j++)
+				matching = Math.min(matching, membership[j][antecedent[j]]);
+			return matching;
+		}
+
+		public void compute(float[][] membership, int[][] columns, int[] rules, int from, int to, float[] degrees, int[] labels){
+			for (int c = from; c < to; c++){
+				int rule = rules[c];
+				float matching = 1.0f;
+				for (int j = 0; j < columns.length && matching > 0; j++)
+					matching = Math.min(matching, membership[j][columns[j][rule]]);
+				degrees[c] = matching;
+			}
+		}
+
+		public void compute(float[][] membership, int[][] columns, int fromRule, int toRule, float[] degrees){
+			for (int i = fromRule; i < toRule; i++){
+				float matching = 1.0f;
+				for (int j = 0; j < columns.length && matching > 0; j++)
+					matching = Math.min(matching, membership[j][columns[j][i]]);
+				degrees[i - fromRule] = matching;
+			}
+		}
+
+		public String toString(){
+			return "minimum";
+		}
+	}
+
+	/**
+	 * Computes the matching degree of a rule with an example
+	 * @param membership membership degrees of the example (first index: variable, second index: label or nominal value)
+	 * @param antecedent antecedents of the rule
+	 * @return the matching degree of the rule
+	 */
+	public abstract float compute(float[][] membership, byte[] antecedent);
+
+	/**
+	 * Computes the matching degree of a list of rules with an example
+	 * @param membership membership degrees of the example (first index: variable, second index: label or nominal value)
+	 * @param columns antecedents by variable: columns[variable][rule]
+	 * @param rules list of rules
+	 * @param from first position of the list
+	 * @param to last position of the list (not included)
+	 * @param degrees output matching degree of each rule of the list (at the same position)
+	 * @param labels temporary structure of getLanes() positions (labels of a variable for a group of rules)
+	 */
+	public abstract void compute(float[][] membership, int[][] columns, int[] rules, int from, int to, float[] degrees, int[] labels);
+
+	/**
+	 * Computes the matching degree of a range of rules with an example
+	 * @param membership membership degrees of the example (first index: variable, second index: label or nominal value)
+	 * @param columns antecedents by variable: columns[variable][rule]
+	 * @param fromRule first rule
+	 * @param toRule last rule (not included)
+	 * @param degrees output matching degree of each rule (position rule-fromRule)
+	 */
+	public abstract void compute(float[][] membership, int[][] columns, int fromRule, int toRule, float[] degrees);
+
+	/**
+	 * It returns the number of rules whose matching degree is computed at the same time in a range of rules
+	 * @return the number of lanes of the vectorised kernel (1 for the scalar kernels)
+	 */
+	public int getLanes(){
+		return 1;
+	}
+
+	/**
+	 * It obtains the kernel of a t-norm (the vectorised one if the Vector API is available)
+	 * @param tNorm the t-norm (Fuzzy_Chi.MINIMUM or Fuzzy_Chi.PRODUCT)
+	 * @return the kernel of the t-norm
+	 */
+	public static MatchingKernel getKernel(int tNorm){
+		try{
+			Class<?> vectorKernel = Class.forName(VECTOR_KERNEL);
+			MatchingKernel kernel = (MatchingKernel)vectorKernel.getMethod("getKernel", int.class).invoke(null, tNorm);
+			if (kernel != null)
+				return kernel;
+		}catch(Exception e){
+			//the vectorised kernel is not available
+		}catch(LinkageError e){
+			//the module jdk.incubator.vector is not available
+		}
+		return getScalarKernel(tNorm);
+	}
+
+	/**
+	 * It obtains the scalar kernel of a t-norm
+	 * @param tNorm the t-norm (Fuzzy_Chi.MINIMUM or Fuzzy_Chi.PRODUCT)
+	 * @return the scalar kernel of the t-norm
+	 */
+	public static MatchingKernel getScalarKernel(int tNorm){
+		if (tNorm == Fuzzy_Chi.MINIMUM)
+			return new Minimum();
+		else
+			return new Product();
+	}
+
+}
@@ -116,7 +116,6 @@ public class NominalVariable extends Variable {
 		return output;        
 	}
 
-	/*
 	@Override
 	public void write(DataOutput out) throws IOException{
 		out.writeUTF(this.getName());
@@ -134,6 +133,5 @@ public class NominalVariable extends Variable {
 			nominalValues[j] = in.readUTF();
 		}
 	}
-	*/
 
 }
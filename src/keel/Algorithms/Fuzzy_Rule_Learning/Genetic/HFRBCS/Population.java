@@ -1,224 +1,600 @@
-package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
-
-import org.core.*;
-import java.util.ArrayList;
-import java.util.Collections;
-
-public class Population {
-	
-	ArrayList <Chromosome> population;
-	KnowledgeBase kb;
-	int nEvals, popSize;
-	double threshold;
-	double bestFitness;
-	boolean newIndividuals;
-	myDataset train;
-	
-	/**
-	 * Default constructor
-	 */
-	public Population(){
-	}
-	
-	/**
-	 * Constructor with parameters
-	 * @param kb Rule base
-	 * @param popSize size of the population
-	 * @param nEvals number of evaluations
-	 * @param bitsGen bits per gen (for gray codification: incest prevention)
-	 */
-	public Population(KnowledgeBase kb, myDataset train, int nEvals){
-		this.kb = kb;
-		this.nEvals = nEvals;
-		this.popSize = kb.size();
-		population = new ArrayList<Chromosome>();
-		this.train = train;
-		threshold = popSize/4.0; //number of rules / 4
-		bestFitness = 0;
-	}
-	
-	/**
-	   * Maximization
-	   * @param a double first number
-	   * @param b double second number
-	   * @return boolean true if a is better than b
-	   */
-	  public boolean BETTER(double a, double b) {
-	    if (a > b) {
-	      return true;
-	    }
-	    return false;
-	  }
-	
-	/**
-	 * It sets the initial population.
-	 * 
-	 * First chromosome has all bits active (all rules selected). The remaining ones are set up randomly
-	 */
-	private void Initialize(Chromosome ini){
-		System.out.println("Initilization");
-		population.clear();
-		population.add(ini);
-		for (int i = 1; i < popSize; i++){
-			Chromosome c = new Chromosome(kb.size());
-			population.add(c);
-		}
-	}
-	
-	/**
-	 * It evaluates those chromosomes which have not been evaluated yet
-	 */
-	private void Evaluate(){
-		//System.out.println("Evaluation...");
-		for (int i = 0; i < population.size(); i++){
-			Chromosome c = population.get(i);
-			if (!c.evaluate){
-				newIndividuals = true; //Al menos hay un cromosoma nuevo en la poblacion
-				kb.updateSelected(c.getChromosome());
-				double acc = classify();
-				c.setFitness(acc);
-				c.evaluated();
-				nEvals--;
-			}
-		}
-	}
-	
-	/**
-	 * Crossover function (one point crossover)
-	 */
-	public void Cross(){
-		//System.out.println("Cross");
-		
-		//Order chromosomes at random
-		int [] sample = new int[population.size()];
-
-		for (int i=0; i<sample.length; i++) sample[i] = i;
-
-		for (int i=0; i<sample.length; i++){
-			int j = Randomize.RandintOpen(0, sample.length);
-			int temp = sample[j];
-			sample[j] = sample[i];
-			sample[i] = temp;
-		}
-		//Select two parents
-		for (int i=0; i<sample.length-2; i+=2){
-			Chromosome mom = population.get(sample[i]);
-			Chromosome dad = population.get(sample[i+1]);
-			//Compute hamming distance
-			double dist = mom.hamming(dad)/2.0;
-			if (dist > threshold){ 
-				HUX(mom,dad);
-				//OnePoint(mom,dad);
-				//xPC_BLX(mom,dad);
-			}
-		}
-	}
-	
-	private void HUX(Chromosome mom, Chromosome dad){
-		Chromosome son1 = mom.clone();
-		Chromosome son2 = dad.clone();
-		ArrayList <Integer> positions = son1.differ(son2);
-
-		int exchanges = positions.size() / 2;
-		if ((positions.size() >0) && (exchanges == 0)) 
-			exchanges = 1;
-
-		int [] flips = new int[exchanges];
-		for (int j = 0; j < exchanges; j++) {
-			int index = Randomize.RandintClosed(0, positions.size()-1);
-			flips[j] = positions.get(index);
-			positions.remove(index);
-		}
-		son1.flip(flips);
-		son2.flip(flips);
-
-		//Insert
-		population.add(son1);
-		population.add(son2);
-	}
-
-
-	public double Select(){
-		//System.out.println("Select");
-		Collections.sort(population);
-		double bestFitness = population.get(0).getFitness();
-		for (int i = population.size()-1; i > popSize; i--){
-			population.remove(i);
-		}
-		return bestFitness;
-	}
-
-	public void Restart(){
-		Chromosome best = population.get(0);
-		population.removeAll(population);
-		Initialize(best);
-	}
-
-	/**
-	 * It launches the evolutionary process
-	 */
-	public void Generation(){
-		int resets = 0;
-		boolean output = false;
-		Chromosome c = new Chromosome(kb.size(),true);
-		Initialize(c);
-		Evaluate();
-		System.out.println("Initilization complete...");
-		do{
-			newIndividuals = false;
-			Cross();
-			Evaluate();
-			double bestFitness = Select();
-			if (bestFitness > this.bestFitness){
-				this.bestFitness = bestFitness;
-				resets = 0;
-				output = true;
-			}
-			if (!newIndividuals){ //No new chromosomes in the population
-				threshold--; //reduce threshold for incest prevention
-				if (threshold < 0){
-					System.out.println("*** Restarting ***");
-					Restart();
-					Evaluate();
-					threshold = kb.size()/4.0;
-		            resets++;              
-				}
-			} 
-			if (output){
-				System.out.println("Evaluations remaining: "+nEvals+", Best Accuracy: "+bestFitness+".");
-				output = false;
-			}
-		}while((nEvals > 0)&&(bestFitness < 1.0)&&(resets < 3));
-	}
-	
-	/**
-	 * Obtains the best RB
-	 */
-	public void updateBest(){
-		Collections.sort(population);
-		kb.updateSelected(population.get(0).getChromosome());
-	}
-	
-	/**
-	 * It generates the output file from a given dataset and stores it in a file
-	 * @param dataset myDataset input dataset
-	 * @param filename String the name of the file
-	 *
-	 * @return The classification accuracy
-	 */
-	private double classify() {
-		int hits, vars;
-		hits = 0;
-		vars = train.getNumberVariables();
-		String [] input = new String[vars];
-		for (int i = 0; i < train.size(); i++){
-			byte classIndex = 0;
-			input = train.getExample(i);
-			classIndex =  train.getClass(i);
-			byte classOut = kb.classify(kb.FRM_WINNING_RULE, input); //change for Additive Combination
-			hits += classIndex == classOut ? 1 : 0;
-		}
-		return 1.0*hits/train.size();
-	}
-
-}
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import org.core.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+public class Population {
+	
+	ArrayList <Chromosome> population;
+	KnowledgeBase kb;
+	int nEvals, popSize;
+	double threshold;
+	double bestFitness;
+	boolean newIndividuals;
+	myDataset train;
+	long memoryBudget; //maximum size of the structures used for the evaluation (bytes)
+	AssociationMatrix matrix; //rules that match each training example (null if it does not fit in memory)
+	boolean storeCorrect; //whether the chromosomes keep the examples they classify correctly (delta evaluation)
+	int deltaEvals; //number of chromosomes evaluated from their parent
+	int [] positions; //positions of the genes that differ between two parents (crossover)
+	FitnessCache cache; //chromosomes already evaluated (null if it does not fit in memory)
+	boolean countCached; //whether the chromosomes found in the cache consume evaluations
+	int resets; //number of restarts without improvement
+	boolean output; //whether the best fitness has improved and it has not been reported yet
+	boolean island; //part of an island model (sequential evaluation, no output)
+	RandomStream random; //random number generator of the population
+	int racingSample; //size of the first sample of the racing evaluation (0 = full evaluation)
+	int [] order; //training examples in stratified random order (racing evaluation)
+	double raceThreshold; //fitness of the worst chromosome of the population (-1 if it is not complete)
+	int racedOut; //number of chromosomes discarded by racing
+	double racingDelta; //significance level of each racing test (RACING_DELTA divided by the number of tests)
+	static final double RACING_DELTA = 0.05; //significance level of the whole racing evaluation of a chromosome
+	static final long RACING_STREAM = 0x52414345L; //random stream of the stratified sample
+	
+	/**
+	 * Default constructor
+	 */
+	public Population(){
+	}
+	
+	/**
+	 * Constructor with parameters
+	 * @param kb Rule base
+	 * @param train training set
+	 * @param nEvals number of evaluations
+	 * @param memoryBudget maximum size of the structures used for the evaluation (bytes)
+	 * @param random random number generator of the population
+	 */
+	public Population(KnowledgeBase kb, myDataset train, int nEvals, long memoryBudget, RandomStream random){
+		this.kb = kb;
+		this.random = random;
+		this.countCached = true;
+		this.memoryBudget = memoryBudget;
+		this.nEvals = nEvals;
+		this.popSize = kb.size();
+		population = new ArrayList<Chromosome>();
+		this.train = train;
+		threshold = popSize/4.0; //number of rules / 4
+		positions = new int[kb.size()];
+		bestFitness = 0;
+	}
+
+	/**
+	 * Constructor for an island of an island model
+	 * @param kb Rule base
+	 * @param train training set
+	 * @param nEvals number of evaluations of the island
+	 * @param random random number generator of the island
+	 */
+	Population(KnowledgeBase kb, myDataset train, int nEvals, RandomStream random){
+		this(kb, train, nEvals, 0L, random);
+		this.island = true;
+	}
+
+	/**
+	 * Sets whether the chromosomes whose fitness is found in the cache consume evaluations
+	 * @param countCached true if they consume evaluations (as if they were evaluated again), false otherwise
+	 */
+	public void setCountCachedEvaluations(boolean countCached){
+		this.countCached = countCached;
+	}
+
+	/**
+	 * Sets the racing evaluation: the new chromosomes are evaluated on stratified samples of increasing size
+	 * (sampleSize, 2*sampleSize, 4*sampleSize...) and they are discarded as soon as their accuracy is significantly
+	 * lower (Hoeffding bound) than the accuracy of the worst chromosome of the population. The discarded chromosomes
+	 * are removed from the population (their fitness is only an estimation)
+	 * @param sampleSize size of the first sample (0 to evaluate all the chromosomes on the whole training set)
+	 */
+	public void setRacing(int sampleSize){
+		this.racingSample = sampleSize;
+	}
+	
+	/**
+	   * Maximization
+	   * @param a double first number
+	   * @param b double second number
+	   * @return boolean true if a is better than b
+	   */
+	  public boolean BETTER(double a, double b) {
+	    if (a > b) {
+	      return true;
+	    }
+	    return false;
+	  }
+	
+	/**
+	 * It sets the initial population.
+	 * 
+	 * First chromosome has all bits active (all rules selected). The remaining ones are set up randomly
+	 */
+	private void Initialize(Chromosome ini){
+		if (!island)
+			System.out.println("Initilization");
+		population.clear();
+		population.add(ini);
+		for (int i = 1; i < popSize; i++){
+			Chromosome c = new Chromosome(kb.size(), random);
+			population.add(c);
+		}
+	}
+	
+	/**
+	 * It evaluates those chromosomes which have not been evaluated yet.
+	 * 
+	 * The selected rules of each chromosome are passed to the KB (which is not modified), so the
+	 * chromosomes are evaluated concurrently when the KB uses several threads. Offspring are evaluated
+	 * from their parent when possible (only the examples matched by the flipped rules are classified again),
+	 * and the chromosomes found in the fitness cache are not evaluated again
+	 */
+	private void Evaluate(){
+		//System.out.println("Evaluation...");
+		final List<Chromosome> pending = new ArrayList<Chromosome>();
+		raceThreshold = getRaceThreshold();
+		List<Chromosome> repeated = new ArrayList<Chromosome>(); //chromosomes found in the cache
+		List<Chromosome> original = new ArrayList<Chromosome>(); //their cached copies
+		for (int i = 0; i < population.size(); i++){
+			Chromosome c = population.get(i);
+			if (!c.evaluate){
+				Chromosome cached = cache != null ? cache.get(c) : null;
+				if (cached != null){
+					repeated.add(c);
+					original.add(cached);
+				}
+				else{
+					pending.add(c);
+					if (cache != null)
+						cache.put(c);
+				}
+			}
+		}
+		if (!pending.isEmpty() || (countCached && !repeated.isEmpty())) //free repeated chromosomes are not new (otherwise the search might never end)
+			newIndividuals = true; //Al menos hay un cromosoma nuevo en la poblacion
+		int nThreads = island ? 1 : kb.getNumThreads(); //the islands already run in parallel
+		final boolean [] raced = new boolean[pending.size()];
+		if (nThreads <= 1 || pending.size() <= 1){
+			deltaEvals += evaluate(pending, 0, pending.size(), raced);
+		}
+		else{
+			int nBlocks = Math.min(nThreads, pending.size());
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+			for (int b = 0; b < nBlocks; b++){
+				final int from = b*pending.size()/nBlocks;
+				final int to = (b+1)*pending.size()/nBlocks;
+				tasks.add(new Callable<Integer>(){
+					public Integer call(){
+						return evaluate(pending, from, to, raced);
+					}
+				});
+			}
+			for (Integer n : kb.invokeAll(tasks))
+				deltaEvals += n;
+		}
+		Set<Chromosome> discarded = Collections.newSetFromMap(new IdentityHashMap<Chromosome, Boolean>());
+		for (int i = 0; i < pending.size(); i++){
+			if (raced[i]){ //their fitness is only an estimation
+				discarded.add(pending.get(i));
+				if (cache != null)
+					cache.remove(pending.get(i));
+			}
+		}
+		for (int i = 0; i < repeated.size(); i++){
+			if (discarded.contains(original.get(i))) //a copy of a chromosome discarded in this call
+				discarded.add(repeated.get(i));
+			else
+				repeated.get(i).copyEvaluation(original.get(i)); //the original may have been evaluated in this call
+		}
+		if (!discarded.isEmpty()){
+			racedOut += discarded.size();
+			for (int i = population.size()-1; i >= 0; i--)
+				if (discarded.contains(population.get(i)))
+					population.remove(i);
+		}
+		nEvals -= pending.size();
+		if (countCached)
+			nEvals -= repeated.size();
+	}
+
+	/**
+	 * It evaluates a block of chromosomes
+	 * @param chromosomes the chromosomes to be evaluated
+	 * @param from first chromosome of the block
+	 * @param to last chromosome of the block (not included)
+	 * @return the number of chromosomes evaluated from their parent
+	 */
+	private int evaluate(List<Chromosome> chromosomes, int from, int to, boolean [] raced){
+		CompiledModel.Workspace ws = null;
+		byte [] predicted = new byte[CompiledModel.BLOCK_SIZE];
+		int nDelta = 0;
+		for (int i = from; i < to; i++){
+			Chromosome c = chromosomes.get(i);
+			double acc;
+			if (matrix != null){
+				long [] correct = storeCorrect ? new long[(train.size()+63) >>> 6] : null;
+				Chromosome parent = c.getParent();
+				int hits;
+				if (correct != null && parent != null && parent.getCorrect() != null
+						&& matrix.getDeltaCost(c.getFlipped()) < train.size()){
+					hits = matrix.evaluate(c.getChromosome(), c.getFlipped(), parent.getCorrect(), parent.getHits(), correct);
+					nDelta++;
+				}
+				else if (raceThreshold >= 0 && order != null){
+					hits = race(c, correct, ws, predicted);
+				}
+				else{
+					hits = matrix.evaluate(c.getChromosome(), correct);
+				}
+				if (hits < 0){
+					raced[i] = true;
+					continue;
+				}
+				c.setCorrect(correct, hits);
+				acc = 1.0*hits/train.size();
+			}
+			else{
+				if (ws == null)
+					ws = kb.newWorkspace();
+				if (raceThreshold >= 0 && order != null){
+					int hits = race(c, null, ws, predicted);
+					if (hits < 0){
+						raced[i] = true;
+						continue;
+					}
+					acc = 1.0*hits/train.size();
+				}
+				else
+					acc = classify(c.getGenes(), ws, predicted);
+				c.clearParent();
+			}
+			c.setFitness(acc);
+			c.evaluated();
+		}
+		return nDelta;
+	}
+
+	/**
+	 * It evaluates a chromosome on stratified samples of increasing size (the sample is doubled in each stage).
+	 * When the upper bound of its accuracy (Hoeffding, with the significance level divided among the tests) is lower
+	 * than the fitness of the worst chromosome of the population, the chromosome is discarded and its fitness is set
+	 * to the accuracy on the sample
+	 * @param c the chromosome
+	 * @param correct bitset where the examples correctly classified are added (null if it is not needed)
+	 * @param ws workspace of the current thread (only used if there is no association matrix)
+	 * @param predicted temporary array for the classes predicted for a block of examples
+	 * @return the number of examples correctly classified, or -1 if the chromosome has been discarded
+	 */
+	private int race(Chromosome c, long [] correct, CompiledModel.Workspace ws, byte [] predicted){
+		boolean [] selected = matrix == null ? c.getGenes() : null;
+		int hits = 0, n = 0, to = Math.min(racingSample, train.size());
+		while (true){
+			if (matrix != null)
+				hits += matrix.evaluate(c.getChromosome(), order, n, to, correct);
+			else
+				hits += classify(selected, ws, predicted, n, to);
+			n = to;
+			if (n == train.size())
+				return hits;
+			if (1.0*hits/n + Math.sqrt(Math.log(1/racingDelta)/(2.0*n)) < raceThreshold){
+				c.setCorrect(null, 0);
+				c.setFitness(1.0*hits/n);
+				c.evaluated();
+				return -1;
+			}
+			to = (int)Math.min(2L*n, train.size());
+		}
+	}
+
+	/**
+	 * It obtains the fitness that a new chromosome must exceed to survive: the fitness of the worst chromosome of
+	 * the population (the popSize-th best evaluated chromosome)
+	 * @return the fitness of the worst chromosome of the population, or -1 if there are not enough evaluated chromosomes
+	 */
+	private double getRaceThreshold(){
+		if (racingSample <= 0)
+			return -1;
+		double [] fitness = new double[population.size()];
+		int n = 0;
+		for (int i = 0; i < population.size(); i++)
+			if (population.get(i).evaluate)
+				fitness[n++] = population.get(i).getFitness();
+		if (n < popSize)
+			return -1;
+		Arrays.sort(fitness, 0, n);
+		return fitness[n-popSize];
+	}
+
+	/**
+	 * It sorts the training examples at random, so that every prefix of the list is a stratified sample: in each
+	 * position, the class with the largest deficit with respect to the proportion of examples of the classes
+	 * (given by the data base) is chosen
+	 */
+	private void stratify(){
+		int nClasses = kb.getDataBase().getNumClasses();
+		long [] counts = train.getClassNumExamples();
+		long [] proportion = kb.getDataBase().getClassNumExamples();
+		if (proportion == null || proportion.length != nClasses)
+			proportion = counts;
+		double total = 0;
+		for (int j = 0; j < nClasses; j++)
+			if (counts[j] > 0)
+				total += proportion[j];
+		if (total <= 0){
+			proportion = counts;
+			total = train.size();
+		}
+		int [][] examples = new int[nClasses][];
+		for (int j = 0; j < nClasses; j++)
+			examples[j] = new int[(int)counts[j]];
+		int [] taken = new int[nClasses];
+		for (int i = 0; i < train.size(); i++){
+			int j = train.getClass(i);
+			examples[j][taken[j]++] = i;
+		}
+		RandomStream shuffle = random.split(RACING_STREAM);
+		for (int j = 0; j < nClasses; j++){
+			for (int k = examples[j].length-1; k > 0; k--){
+				int r = shuffle.RandintClosed(0, k);
+				int aux = examples[j][k];
+				examples[j][k] = examples[j][r];
+				examples[j][r] = aux;
+			}
+			taken[j] = 0;
+		}
+		order = new int[train.size()];
+		for (int p = 0; p < order.length; p++){
+			int best = -1;
+			double bestDeficit = 0;
+			for (int j = 0; j < nClasses; j++){
+				if (taken[j] == examples[j].length)
+					continue;
+				double deficit = (p+1)*(proportion[j]/total) - taken[j];
+				if (best < 0 || deficit > bestDeficit){
+					best = j;
+					bestDeficit = deficit;
+				}
+			}
+			order[p] = examples[best][taken[best]++];
+		}
+	}
+	
+	/**
+	 * Crossover function (one point crossover)
+	 */
+	public void Cross(){
+		//System.out.println("Cross");
+		
+		//Order chromosomes at random
+		int [] sample = new int[population.size()];
+
+		for (int i=0; i<sample.length; i++) sample[i] = i;
+
+		for (int i=0; i<sample.length; i++){
+			int j = random.RandintOpen(0, sample.length);
+			int temp = sample[j];
+			sample[j] = sample[i];
+			sample[i] = temp;
+		}
+		//Select two parents
+		for (int i=0; i<sample.length-2; i+=2){
+			Chromosome mom = population.get(sample[i]);
+			Chromosome dad = population.get(sample[i+1]);
+			//Compute hamming distance
+			double dist = mom.hamming(dad)/2.0;
+			if (dist > threshold){ 
+				HUX(mom,dad);
+				//OnePoint(mom,dad);
+				//xPC_BLX(mom,dad);
+			}
+		}
+	}
+	
+	private void HUX(Chromosome mom, Chromosome dad){
+		Chromosome son1 = mom.clone();
+		Chromosome son2 = dad.clone();
+		int nPositions = son1.differ(son2, positions);
+
+		int exchanges = nPositions / 2;
+		if ((nPositions >0) && (exchanges == 0)) 
+			exchanges = 1;
+
+		//Partial Fisher-Yates: the first exchanges positions are chosen at random (without replacement)
+		for (int j = 0; j < exchanges; j++) {
+			int index = j + random.RandintClosed(0, nPositions-1-j);
+			int temp = positions[j];
+			positions[j] = positions[index];
+			positions[index] = temp;
+		}
+		int [] flips = Arrays.copyOf(positions, exchanges);
+		son1.flip(flips);
+		son2.flip(flips);
+		son1.setParent(mom, flips);
+		son2.setParent(dad, flips);
+
+		//Insert
+		population.add(son1);
+		population.add(son2);
+	}
+
+
+	public double Select(){
+		//System.out.println("Select");
+		Collections.sort(population);
+		double bestFitness = population.get(0).getFitness();
+		for (int i = population.size()-1; i > popSize; i--){
+			population.remove(i);
+		}
+		return bestFitness;
+	}
+
+	public void Restart(){
+		Chromosome best = population.get(0);
+		population.removeAll(population);
+		Initialize(best);
+	}
+
+	/**
+	 * It launches the evolutionary process
+	 */
+	public void Generation(){
+		matrix = AssociationMatrix.build(kb, train, memoryBudget);
+		if (matrix != null)
+			System.out.println("Association matrix: "+matrix.getNumEntries()+" entries ("+(matrix.getMemory()/1024)+" KB)");
+		else
+			System.out.println("The association matrix does not fit in memory: the association degrees are computed in each evaluation");
+		prepare(matrix, memoryBudget);
+		start();
+		while (step());
+		if (storeCorrect)
+			System.out.println("Chromosomes evaluated from their parent: "+deltaEvals);
+		if (cache != null)
+			System.out.println("Fitness cache: "+cache.getHits()+" hits, "+cache.getMisses()+" misses");
+		if (order != null)
+			System.out.println("Chromosomes discarded by racing: "+racedOut);
+	}
+
+	/**
+	 * It sets up the structures used for the evaluation
+	 * @param matrix the association matrix (null if it does not fit in memory)
+	 * @param memoryBudget maximum size of the structures used for the evaluation, including the matrix (bytes)
+	 */
+	void prepare(AssociationMatrix matrix, long memoryBudget){
+		this.matrix = matrix;
+		long cacheSize = 2L*popSize*8*((train.size()+63) >>> 6); //population and offspring
+		storeCorrect = matrix != null && matrix.getMemory() + cacheSize <= memoryBudget;
+		deltaEvals = 0;
+		long available = memoryBudget - (matrix != null ? matrix.getMemory() : 0) - (storeCorrect ? cacheSize : 0);
+		long entrySize = 8*((kb.size()+63) >>> 6) + (storeCorrect ? 8*((train.size()+63) >>> 6) : 0) + 128;
+		int capacity = (int)Math.min(4L*popSize, Math.max(0, available/entrySize));
+		cache = capacity > 0 ? new FitnessCache(capacity) : null;
+		racedOut = 0;
+		order = null;
+		if (racingSample > 0 && racingSample < train.size()){
+			stratify();
+			int tests = 0; //one test after each stage but the last one (whole training set)
+			for (long n = racingSample; n < train.size(); n *= 2)
+				tests++;
+			racingDelta = RACING_DELTA/tests; //Bonferroni correction
+		}
+	}
+
+	/**
+	 * It creates and evaluates the initial population
+	 */
+	void start(){
+		resets = 0;
+		output = false;
+		Chromosome c = new Chromosome(kb.size(),true);
+		Initialize(c);
+		Evaluate();
+		if (!island)
+			System.out.println("Initilization complete...");
+	}
+
+	/**
+	 * It runs a generation of the CHC algorithm (crossover, evaluation, selection and restart)
+	 * @return true if the evolutionary process must go on, false otherwise
+	 */
+	boolean step(){
+		newIndividuals = false;
+		Cross();
+		Evaluate();
+		double bestFitness = Select();
+		if (bestFitness > this.bestFitness){
+			this.bestFitness = bestFitness;
+			resets = 0;
+			output = true;
+		}
+		if (!newIndividuals){ //No new chromosomes in the population
+			threshold--; //reduce threshold for incest prevention
+			if (threshold < 0){
+				if (!island)
+					System.out.println("*** Restarting ***");
+				Restart();
+				Evaluate();
+				threshold = kb.size()/4.0;
+		            resets++;              
+			}
+		} 
+		if (output){
+			if (!island)
+				System.out.println("Evaluations remaining: "+nEvals+", Best Accuracy: "+bestFitness+".");
+			output = false;
+		}
+		return (nEvals > 0)&&(this.bestFitness < 1.0)&&(resets < 3);
+	}
+
+	/**
+	 * It returns the best chromosome of the population
+	 * @return the best chromosome
+	 */
+	Chromosome getBest(){
+		Collections.sort(population);
+		return population.get(0);
+	}
+
+	/**
+	 * It replaces the worst chromosome of the population by a copy of a chromosome of another island
+	 * @param c the (evaluated) migrant chromosome
+	 */
+	void immigrate(Chromosome c){
+		Chromosome migrant = c.clone();
+		migrant.copyEvaluation(c);
+		population.set(population.size()-1, migrant);
+		Collections.sort(population);
+	}
+	
+	/**
+	 * Obtains the best RB
+	 */
+	public void updateBest(){
+		Collections.sort(population);
+		kb.updateSelected(population.get(0).getGenes());
+	}
+	
+	/**
+	 * It computes the classification accuracy over the training set with a given set of selected rules
+	 * @param selected whether each rule is selected (true) or not (false)
+	 * @param ws workspace of the current thread
+	 * @param predicted temporary array for the classes predicted for a block of examples
+	 *
+	 * @return The classification accuracy
+	 */
+	private double classify(boolean [] selected, CompiledModel.Workspace ws, byte [] predicted) {
+		int hits;
+		hits = 0;
+		for (int from = 0; from < train.size(); from += predicted.length){
+			int to = Math.min(train.size(), from + predicted.length);
+			kb.classify(KnowledgeBase.FRM_WINNING_RULE, train, null, from, to, selected, predicted, ws); //change for Additive Combination
+			for (int i = from; i < to; i++)
+				hits += train.getClass(i) == predicted[i - from] ? 1 : 0;
+		}
+		return 1.0*hits/train.size();
+	}
+
+	/**
+	 * It obtains the number of examples correctly classified in a range of the stratified list of examples
+	 * @param selected selected rules
+	 * @param ws workspace of the current thread
+	 * @param predicted temporary array for the classes predicted for a block of examples
+	 * @param from first position of the list
+	 * @param to last position of the list (not included)
+	 * @return the number of examples correctly classified
+	 */
+	private int classify(boolean [] selected, CompiledModel.Workspace ws, byte [] predicted, int from, int to) {
+		int hits = 0;
+		for (int start = from; start < to; start += predicted.length){
+			int end = Math.min(to, start + predicted.length);
+			kb.classify(KnowledgeBase.FRM_WINNING_RULE, train, order, start, end, selected, predicted, ws); //change for Additive Combination
+			for (int p = start; p < end; p++)
+				hits += train.getClass(order[p]) == predicted[p - start] ? 1 : 0;
+		}
+		return hits;
+	}
+
+}
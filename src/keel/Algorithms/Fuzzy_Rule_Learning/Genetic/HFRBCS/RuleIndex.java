@@ -0,0 +1,331 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: RuleIndex</p>
+ *
+ * <p>Description: Index of a rule base to obtain the rules that can match an example. Since a fuzzy value
+ * only belongs to (at most) two adjacent labels, only a few rules can have a matching degree greater than zero.
+ * Two strategies are used, depending on which one is cheaper for the example:
+ * <ul>
+ * <li>Hash probing: the antecedents of Chi rules are full conjunctions, so the candidate rules are exactly
+ * those whose antecedents are one of the combinations of the active labels of each variable. These
+ * combinations are enumerated and looked up in a hash table of antecedents.</li>
+ * <li>Inverted index: for each variable and linguistic label (or nominal value), the set of rules (as a bitset)
+ * with that label in the antecedent. The postings of the active labels of each variable are joined,
+ * and the variables intersected.</li>
+ * </ul></p>
+ *
+ * @version 1.1
+ */
+public class RuleIndex implements Serializable{
+
+	private static final long serialVersionUID = -2841637593740261947L;
+
+	/**
+	 * postings[variable][label] = bitset with the rules having that label for that variable
+	 */
+	private long[][][] postings;
+	private boolean[] nominal;
+	private int numRules, numWords;
+
+	/**
+	 * Hash table of antecedents (open addressing, linear probing): rule ids (-1 for empty slots)
+	 */
+	private byte[][] antecedents;
+	private int[] table;
+	private int tableMask;
+
+	/**
+	 * Temporary structures of a query. Each thread must use its own workspace
+	 */
+	public static class Workspace {
+		long[] bits; // candidate rules (bitset)
+		int[] ids; // candidate rules (ids)
+		byte[][] active; // active labels of each variable
+		int[] numActive; // number of active labels of each variable
+		int[] position; // current combination of active labels
+		byte[] key; // antecedents of the current combination
+
+		Workspace(RuleIndex index){
+			int nVariables = index.postings.length;
+			bits = new long[index.numWords];
+			ids = new int[index.numRules];
+			active = new byte[nVariables][];
+			for (int j = 0; j < nVariables; j++)
+				active[j] = new byte[index.postings[j].length];
+			numActive = new int[nVariables];
+			position = new int[nVariables];
+			key = new byte[nVariables];
+		}
+
+		/**
+		 * It returns the ids of the candidate rules obtained in the last query
+		 * @return the ids of the candidate rules (only the first positions are valid)
+		 */
+		public int[] getIds(){
+			return ids;
+		}
+	}
+
+	/**
+	 * Builds the index
+	 * @param antecedents antecedents of each rule (position in the array = rule id)
+	 * @param dataBase the data base (fuzzy and nominal variables)
+	 */
+	public RuleIndex(byte[][] antecedents, DataBase dataBase){
+		int nVariables = dataBase.getNumVariables();
+		this.antecedents = antecedents;
+		numRules = antecedents.length;
+		numWords = (numRules + 63) >>> 6;
+		postings = new long[nVariables][][];
+		nominal = new boolean[nVariables];
+		for (int j = 0; j < nVariables; j++){
+			int nLabels;
+			if (dataBase.get(j) instanceof NominalVariable){
+				nominal[j] = true;
+				nLabels = ((NominalVariable)dataBase.get(j)).getNominalValues().length;
+			}
+			else
+				nLabels = ((FuzzyVariable)dataBase.get(j)).getFuzzySets().length;
+			postings[j] = new long[nLabels][numWords];
+		}
+		int capacity = 2;
+		while (capacity < 2*numRules)
+			capacity <<= 1;
+		table = new int[capacity];
+		Arrays.fill(table, -1);
+		tableMask = capacity - 1;
+		for (int i = 0; i < numRules; i++){
+			for (int j = 0; j < nVariables; j++)
+				postings[j][antecedents[i][j]][i >>> 6] |= 1L << i;
+			int slot = hash(antecedents[i]) & tableMask;
+			while (table[slot] >= 0)
+				slot = (slot + 1) & tableMask;
+			table[slot] = i;
+		}
+	}
+
+	/**
+	 * Creates the temporary structures needed to query this index
+	 * @return a new workspace for this index
+	 */
+	public Workspace newWorkspace(){
+		return new Workspace(this);
+	}
+
+	/**
+	 * It returns the number of rules indexed
+	 * @return the number of rules
+	 */
+	public int size(){
+		return numRules;
+	}
+
+	/**
+	 * It returns the number of words (long values) of the bitsets
+	 * @return the number of words of the bitsets
+	 */
+	public int getNumWords(){
+		return numWords;
+	}
+
+	/**
+	 * Hash function for the antecedents of a rule
+	 * @param key antecedents
+	 * @return hash value
+	 */
+	private static int hash(byte[] key){
+		int h = 0;
+		for (int j = 0; j < key.length; j++)
+			h = 31*h + key[j];
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	/**
+	 * It computes the bitset of the rules that can match the example (only in the range of words [fromWord, toWord))
+	 * @param membership membership degrees of the example to the linguistic labels of the fuzzy variables
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param candidates output bitset (at least toWord words)
+	 * @param fromWord first word to be computed
+	 * @param toWord last word to be computed (not included)
+	 * @return false if there is no candidate rule in the range, true otherwise
+	 */
+	public boolean fillCandidates(float[][] membership, double[] example, long[] candidates, int fromWord, int toWord){
+		for (int w = fromWord; w < toWord; w++)
+			candidates[w] = -1L;
+		if (toWord == numWords && (numRules & 63) != 0)
+			candidates[numWords-1] = (1L << numRules) - 1;
+		for (int j = 0; j < postings.length; j++){
+			boolean any = false;
+			if (nominal[j]){
+				int code = (int)example[j];
+				if (code < 0 || code >= postings[j].length)
+					return false;
+				long[] posting = postings[j][code];
+				for (int w = fromWord; w < toWord; w++){
+					candidates[w] &= posting[w];
+					any |= candidates[w] != 0;
+				}
+			}
+			else{
+				float[] degrees = membership[j];
+				for (int w = fromWord; w < toWord; w++){
+					if (candidates[w] == 0)
+						continue;
+					long union = 0;
+					for (int label = 0; label < postings[j].length; label++)
+						if (degrees[label] > 0)
+							union |= postings[j][label][w];
+					candidates[w] &= union;
+					any |= candidates[w] != 0;
+				}
+			}
+			if (!any)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * It obtains the ids of the rules that can match the example, in ascending order
+	 * @param membership membership degrees of the example to the linguistic labels of the fuzzy variables
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param ws workspace of the current thread (the ids are stored in ws.getIds())
+	 * @return the number of candidate rules
+	 */
+	public int getCandidates(float[][] membership, double[] example, Workspace ws){
+		return getCandidates(membership, example, ws, 0, numRules);
+	}
+
+	/**
+	 * It obtains the ids of the rules in the range [fromRule, toRule) that can match the example, in ascending order
+	 * @param membership membership degrees of the example to the linguistic labels of the fuzzy variables
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param ws workspace of the current thread (the ids are stored in ws.getIds())
+	 * @param fromRule first rule of the range (multiple of 64)
+	 * @param toRule last rule of the range, not included (multiple of 64, or the number of rules)
+	 * @return the number of candidate rules
+	 */
+	public int getCandidates(float[][] membership, double[] example, Workspace ws, int fromRule, int toRule){
+		int fromWord = fromRule >>> 6;
+		int toWord = (toRule + 63) >>> 6;
+		// Active labels of each variable and number of combinations
+		long combinations = 1;
+		for (int j = 0; j < postings.length; j++){
+			ws.numActive[j] = 0;
+			if (nominal[j]){
+				int code = (int)example[j];
+				if (code >= 0 && code < postings[j].length)
+					ws.active[j][ws.numActive[j]++] = (byte)code;
+			}
+			else{
+				for (int label = 0; label < postings[j].length; label++)
+					if (membership[j][label] > 0)
+						ws.active[j][ws.numActive[j]++] = (byte)label;
+			}
+			combinations *= ws.numActive[j];
+			if (combinations == 0)
+				return 0;
+			if (combinations > toWord - fromWord) // the inverted index is cheaper
+				return getCandidatesPostings(membership, example, ws, fromWord, toWord);
+		}
+		return getCandidatesProbing(ws, fromRule, toRule);
+	}
+
+	/**
+	 * It obtains the candidate rules by intersecting the postings of the active labels
+	 * @param membership membership degrees of the example to the linguistic labels of the fuzzy variables
+	 * @param example input example (real values for fuzzy variables and nominal value indices for nominal variables)
+	 * @param ws workspace of the current thread
+	 * @param fromWord first word of the bitsets
+	 * @param toWord last word of the bitsets (not included)
+	 * @return the number of candidate rules
+	 */
+	private int getCandidatesPostings(float[][] membership, double[] example, Workspace ws, int fromWord, int toWord){
+		if (!fillCandidates(membership, example, ws.bits, fromWord, toWord))
+			return 0;
+		int n = 0;
+		for (int w = fromWord; w < toWord; w++){
+			long word = ws.bits[w];
+			while (word != 0){
+				ws.ids[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * It obtains the candidate rules by enumerating all the combinations of active labels (stored in the workspace)
+	 * and looking them up in the hash table
+	 * @param ws workspace of the current thread
+	 * @param fromRule first rule of the range
+	 * @param toRule last rule of the range (not included)
+	 * @return the number of candidate rules
+	 */
+	private int getCandidatesProbing(Workspace ws, int fromRule, int toRule){
+		int nVariables = postings.length;
+		for (int j = 0; j < nVariables; j++){
+			ws.position[j] = 0;
+			ws.key[j] = ws.active[j][0];
+		}
+		int n = 0;
+		while (true){
+			int slot = hash(ws.key) & tableMask;
+			while (table[slot] >= 0){
+				int id = table[slot];
+				if (id >= fromRule && id < toRule && Arrays.equals(antecedents[id], ws.key))
+					ws.ids[n++] = id;
+				slot = (slot + 1) & tableMask;
+			}
+			// Next combination
+			int j = nVariables - 1;
+			while (j >= 0 && ++ws.position[j] == ws.numActive[j]){
+				ws.position[j] = 0;
+				ws.key[j] = ws.active[j][0];
+				j--;
+			}
+			if (j < 0)
+				break;
+			ws.key[j] = ws.active[j][ws.position[j]];
+		}
+		Arrays.sort(ws.ids, 0, n);
+		return n;
+	}
+
+}
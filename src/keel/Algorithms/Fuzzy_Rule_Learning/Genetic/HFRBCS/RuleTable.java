@@ -0,0 +1,261 @@
+package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
+
+import java.util.Arrays;
+
+/***********************************************************************
+
+This file is part of KEEL-software, the Data Mining tool for regression,
+classification, clustering, pattern mining and so on.
+
+Copyright (C) 2004-2010
+
+F. Herrera (herrera@decsai.ugr.es)
+L. Sanchez (luciano@uniovi.es)
+J. Alcala-Fdez (jalcala@decsai.ugr.es)
+S. Garcia (sglopez@ujaen.es)
+A. Fernandez (alberto.fernandez@ujaen.es)
+J. Luengo (julianlm@decsai.ugr.es)
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see http://www.gnu.org/licenses/
+
+ **********************************************************************/
+
+/**
+ * <p>Title: RuleTable</p>
+ *
+ * <p>Description: Table of the rules generated from the examples (antecedents and number of examples of each class).
+ * The antecedents are packed into long values using ceil(log2(labels)) bits per variable (several long values
+ * per rule if they do not fit into one), and they are stored in an open-addressing hash table.
+ * Rules are numbered in order of insertion.</p>
+ *
+ * @version 1.0
+ */
+public class RuleTable {
+
+	private int numVariables, numClasses;
+	private int stride; // number of long values per rule
+	private int[] word, shift; // position of each variable in the packed antecedents
+	private long[] mask; // mask of the bits of each variable
+
+	private long[] keys; // keys[id*stride ... id*stride+stride-1] = packed antecedents of rule id
+	private int[] counts; // counts[id*numClasses + class] = number of examples of the class covered by rule id
+	private int[] slots; // hash table: rule id (-1 for empty slots)
+	private int slotMask;
+	private int size;
+
+	/**
+	 * Creates an empty rule table
+	 * @param dataBase the data base (fuzzy and nominal variables)
+	 */
+	public RuleTable(DataBase dataBase){
+		numVariables = dataBase.getNumVariables();
+		numClasses = dataBase.getNumClasses();
+		word = new int[numVariables];
+		shift = new int[numVariables];
+		mask = new long[numVariables];
+		int bits = 0;
+		for (int j = 0; j < numVariables; j++){
+			int nLabels;
+			if (dataBase.get(j) instanceof NominalVariable)
+				nLabels = ((NominalVariable)dataBase.get(j)).getNominalValues().length;
+			else
+				nLabels = ((FuzzyVariable)dataBase.get(j)).getFuzzySets().length;
+			int width = Math.max(1, 32 - Integer.numberOfLeadingZeros(nLabels - 1)); // ceil(log2(nLabels))
+			if ((bits & 63) + width > 64) // a label never crosses two long values
+				bits = (bits + 63) & ~63;
+			word[j] = bits >>> 6;
+			shift[j] = bits & 63;
+			mask[j] = width == 64 ? -1L : (1L << width) - 1;
+			bits += width;
+		}
+		stride = Math.max(1, (bits + 63) >>> 6);
+		keys = new long[16*stride];
+		counts = new int[16*numClasses];
+		slots = new int[32];
+		Arrays.fill(slots, -1);
+		slotMask = slots.length - 1;
+		size = 0;
+	}
+
+	/**
+	 * It returns the number of rules of the table
+	 * @return the number of rules
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Packs the antecedents of a rule
+	 * @param antecedents antecedents of the rule
+	 * @param key output array (stride values)
+	 */
+	private void pack(byte[] antecedents, long[] key){
+		for (int w = 0; w < stride; w++)
+			key[w] = 0;
+		for (int j = 0; j < numVariables; j++)
+			key[word[j]] |= ((long)antecedents[j] & mask[j]) << shift[j];
+	}
+
+	/**
+	 * Hash function of a packed key
+	 * @param key packed antecedents
+	 * @param offset position of the key in the array
+	 * @return hash value
+	 */
+	private int hash(long[] key, int offset){
+		long h = 0;
+		for (int w = 0; w < stride; w++){
+			h = (h ^ key[offset+w]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 32;
+		}
+		return (int)h;
+	}
+
+	/**
+	 * Looks for the rule with the given packed antecedents
+	 * @param key packed antecedents
+	 * @param offset position of the key in the array
+	 * @return the slot of the rule, or the empty slot where it must be inserted
+	 */
+	private int findSlot(long[] key, int offset){
+		int slot = hash(key, offset) & slotMask;
+		while (slots[slot] >= 0){
+			int base = slots[slot]*stride;
+			int w = 0;
+			while (w < stride && keys[base+w] == key[offset+w])
+				w++;
+			if (w == stride)
+				return slot;
+			slot = (slot + 1) & slotMask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Adds the example(s) of a class to the rule with the given packed antecedents (creating it if it does not exist)
+	 * @param key packed antecedents
+	 * @param offset position of the key in the array
+	 * @param classIndex class of the example(s)
+	 * @param count number of examples
+	 * @return the id of the rule
+	 */
+	private int add(long[] key, int offset, int classIndex, int count){
+		int slot = findSlot(key, offset);
+		int id = slots[slot];
+		if (id < 0){
+			id = size++;
+			if (size*stride > keys.length){
+				keys = Arrays.copyOf(keys, 2*keys.length);
+				counts = Arrays.copyOf(counts, 2*counts.length);
+			}
+			System.arraycopy(key, offset, keys, id*stride, stride);
+			slots[slot] = id;
+			if (2*size > slots.length)
+				rehash();
+		}
+		counts[id*numClasses + classIndex] += count;
+		return id;
+	}
+
+	/**
+	 * Adds an example to the table
+	 * @param antecedents antecedents of the rule generated from the example
+	 * @param classIndex class of the example
+	 * @param key temporary array (at least getStride() values)
+	 * @return the id of the rule
+	 */
+	public int add(byte[] antecedents, byte classIndex, long[] key){
+		pack(antecedents, key);
+		return add(key, 0, classIndex, 1);
+	}
+
+	/**
+	 * Adds all the rules of another table (built with the same data base), keeping their order after the rules of this table
+	 * @param other the other rule table
+	 */
+	public void addAll(RuleTable other){
+		for (int id = 0; id < other.size; id++)
+			for (int j = 0; j < numClasses; j++)
+				if (other.counts[id*numClasses + j] > 0)
+					add(other.keys, id*stride, j, other.counts[id*numClasses + j]);
+	}
+
+	/**
+	 * Doubles the size of the hash table
+	 */
+	private void rehash(){
+		slots = new int[2*slots.length];
+		Arrays.fill(slots, -1);
+		slotMask = slots.length - 1;
+		for (int id = 0; id < size; id++)
+			slots[findSlot(keys, id*stride)] = id;
+	}
+
+	/**
+	 * It returns the number of long values used to pack the antecedents of a rule
+	 * @return the number of long values per rule
+	 */
+	public int getStride(){
+		return stride;
+	}
+
+	/**
+	 * It returns the antecedents of a rule
+	 * @param id the id of the rule
+	 * @return the antecedents of the rule
+	 */
+	public byte[] getAntecedents(int id){
+		byte[] antecedents = new byte[numVariables];
+		for (int j = 0; j < numVariables; j++)
+			antecedents[j] = (byte)((keys[id*stride + word[j]] >>> shift[j]) & mask[j]);
+		return antecedents;
+	}
+
+	/**
+	 * It returns the number of examples of a class covered by a rule
+	 * @param id the id of the rule
+	 * @param classIndex the class
+	 * @return the number of examples of the class that generated the rule
+	 */
+	public int getCount(int id, int classIndex){
+		return counts[id*numClasses + classIndex];
+	}
+
+	/**
+	 * It returns the number of examples (of any class) covered by a rule
+	 * @param id the id of the rule
+	 * @return the number of examples that generated the rule
+	 */
+	public int getTotalCount(int id){
+		int total = 0;
+		for (int j = 0; j < numClasses; j++)
+			total += counts[id*numClasses + j];
+		return total;
+	}
+
+	/**
+	 * It returns the number of different classes of the examples covered by a rule
+	 * @param id the id of the rule
+	 * @return the number of classes of the rule
+	 */
+	public int getNumClasses(int id){
+		int n = 0;
+		for (int j = 0; j < numClasses; j++)
+			if (counts[id*numClasses + j] > 0)
+				n++;
+		return n;
+	}
+
+}
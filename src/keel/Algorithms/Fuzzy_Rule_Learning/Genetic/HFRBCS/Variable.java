@@ -60,9 +60,9 @@ public abstract class Variable implements Serializable {
      */
     public abstract Variable clone();
     
-    //public abstract void write(DataOutput out) throws IOException;
+    public abstract void write(DataOutput out) throws IOException;
     
-    //public abstract void readFields(DataInput in) throws IOException;
+    public abstract void readFields(DataInput in) throws IOException;
     
     /**
      * Returns the variable name
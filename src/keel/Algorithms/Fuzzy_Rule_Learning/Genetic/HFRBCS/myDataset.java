@@ -1,10 +1,12 @@
 package keel.Algorithms.Fuzzy_Rule_Learning.Genetic.HFRBCS;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /***********************************************************************
 
@@ -52,46 +54,161 @@ along with this program.  If not, see http://www.gnu.org/licenses/
 
 public class myDataset {
 
-	ArrayList <String []> examples;
-	ArrayList <Byte> classes;
+	/**
+	 * Columnar storage: one column per input variable, filled once at load time.
+	 * Fuzzy variables keep their real value (double, so that the results are the same as parsing the original string);
+	 * nominal variables keep the index of their nominal value (-1 if the value is unknown).
+	 */
+	double [][] numericColumns; // numericColumns[variable] != null for fuzzy variables
+	byte [][] nominalColumns; // nominalColumns[variable] != null for nominal variables
+	byte [] classes;
+	int numExamples;
+	DataBase dataBase;
+	static final long MIN_RANGE_SIZE = 1 << 20; // minimum size (bytes) of the ranges of the file read concurrently
 	
 	myDataset(){
-		examples = new ArrayList<String []>();
-		classes = new ArrayList<Byte>();
+		numExamples = 0;
+		classes = new byte[0];
 	}
 	
 	myDataset(String inputFile, DataBase dataBase) throws Exception{
-		long progress = 0;
-		examples = new ArrayList<String []>();
-		classes = new ArrayList<Byte>();
+		this(inputFile, dataBase, 1);
+	}
+	
+	/**
+	 * It reads a data file. The "@data" section is split into ranges of whole lines that are parsed concurrently,
+	 * and the examples are stored in the same order as in the file
+	 * @param inputFile the data file
+	 * @param dataBase the data base
+	 * @param nThreads number of threads (1 for sequential reading)
+	 * @throws Exception if the file cannot be read
+	 */
+	myDataset(final String inputFile, final DataBase dataBase, int nThreads) throws Exception{
+		this.dataBase = dataBase;
+		allocate(1024);
 		try{
-			BufferedReader br = new BufferedReader(new FileReader(new File(inputFile)));
-			String buffer = null;
-			StringTokenizer st;
-			String input [];
-			while (!(buffer = br.readLine()).startsWith("@data")); //skip all header lines
-			while ((buffer = br.readLine())!=null){
-				progress++;
-				/*if (progress % 100000 == 0){
-					System.err.println("Instancia #"+progress);
-				}*/
-				st = new StringTokenizer(buffer, ", ");
-				input = new String[dataBase.getNumVariables()];
-
-				int i = 0;
-				while (st.countTokens() > 1){
-					input[i] = st.nextToken();
-					i++;
+			DataFileParser parser = new DataFileParser(inputFile, dataBase);
+			long [] limits = parser.split(nThreads <= 1 ? 1 : 4*nThreads, MIN_RANGE_SIZE);
+			if (limits.length <= 2){
+				read(parser, Integer.MAX_VALUE);
+				parser.close();
+			}
+			else{
+				parser.close();
+				List<Callable<myDataset>> tasks = new ArrayList<Callable<myDataset>>();
+				for (int r = 0; r + 1 < limits.length; r++){
+					final long from = limits[r];
+					final long to = limits[r+1];
+					tasks.add(new Callable<myDataset>(){
+						public myDataset call() throws IOException{
+							DataFileParser range = new DataFileParser(inputFile, dataBase, from, to);
+							myDataset part = new myDataset(range, dataBase, Integer.MAX_VALUE);
+							range.close();
+							return part;
+						}
+					});
+				}
+				ForkJoinPool pool = new ForkJoinPool(nThreads);
+				try{
+					for (Future<myDataset> part : pool.invokeAll(tasks))
+						append(part.get());
+				}finally{
+					pool.shutdown();
 				}
-				examples.add(input);
-				byte classIndex = dataBase.getClassIndex(st.nextToken());
-				classes.add(classIndex);
 			}
-			br.close();
 		}catch(Exception e){
 			System.err.println("Error while reading dataset "+inputFile);
 			e.printStackTrace();
 		}
+		allocate(numExamples); //trim the columns
+	}
+	
+	/**
+	 * It reads the next examples of a data file (a chunk of the file)
+	 * @param parser the parser of the data file
+	 * @param dataBase the data base
+	 * @param maxExamples maximum number of examples to be read
+	 * @throws IOException if the file cannot be read
+	 */
+	myDataset(DataFileParser parser, DataBase dataBase, int maxExamples) throws IOException{
+		this.dataBase = dataBase;
+		allocate(Math.max(1, Math.min(maxExamples, 1024)));
+		read(parser, maxExamples);
+		allocate(numExamples); //trim the columns
+	}
+	
+	/**
+	 * It builds a dataset from its columns
+	 * @param dataBase the data base
+	 * @param numericColumns the real values of each fuzzy variable (null for nominal variables)
+	 * @param nominalColumns the nominal value indices of each nominal variable (null for fuzzy variables)
+	 * @param classes the class of each example
+	 */
+	myDataset(DataBase dataBase, double [][] numericColumns, byte [][] nominalColumns, byte [] classes){
+		this.dataBase = dataBase;
+		this.numericColumns = numericColumns;
+		this.nominalColumns = nominalColumns;
+		this.classes = classes;
+		this.numExamples = classes.length;
+	}
+	
+	/**
+	 * It reads the examples of a data file and adds them to the dataset
+	 * @param parser the parser of the data file
+	 * @param maxExamples maximum number of examples of the dataset
+	 * @throws IOException if the file cannot be read
+	 */
+	private void read(DataFileParser parser, int maxExamples) throws IOException{
+		double [] row = new double[dataBase.getNumVariables()];
+		while (numExamples < maxExamples && parser.next(row)){
+			if (numExamples == classes.length)
+				allocate(2*classes.length);
+			for (int j = 0; j < row.length; j++){
+				if (numericColumns[j] != null)
+					numericColumns[j][numExamples] = row[j];
+				else
+					nominalColumns[j][numExamples] = (byte)row[j];
+			}
+			classes[numExamples] = parser.getClassIndex();
+			numExamples++;
+		}
+	}
+	
+	/**
+	 * It adds the examples of another dataset (with the same data base) after the examples of this dataset
+	 * @param other the other dataset
+	 */
+	private void append(myDataset other){
+		if (numExamples + other.numExamples > classes.length)
+			allocate(Math.max(2*classes.length, numExamples + other.numExamples));
+		for (int j = 0; j < numericColumns.length; j++){
+			if (numericColumns[j] != null)
+				System.arraycopy(other.numericColumns[j], 0, numericColumns[j], numExamples, other.numExamples);
+			else
+				System.arraycopy(other.nominalColumns[j], 0, nominalColumns[j], numExamples, other.numExamples);
+		}
+		System.arraycopy(other.classes, 0, classes, numExamples, other.numExamples);
+		numExamples += other.numExamples;
+	}
+	
+	/**
+	 * It (re)allocates the columns of the dataset keeping the examples already read
+	 * @param capacity the new number of examples that the columns can store
+	 */
+	private void allocate(int capacity){
+		int nVariables = dataBase.getNumVariables();
+		if (numericColumns == null){
+			numericColumns = new double[nVariables][];
+			nominalColumns = new byte[nVariables][];
+			classes = new byte[0];
+		}
+		for (int j = 0; j < nVariables; j++){
+			if (dataBase.get(j) instanceof FuzzyVariable)
+				numericColumns[j] = Arrays.copyOf(numericColumns[j] == null ? new double[0] : numericColumns[j], capacity);
+			else
+				nominalColumns[j] = Arrays.copyOf(nominalColumns[j] == null ? new byte[0] : nominalColumns[j], capacity);
+		}
+		classes = Arrays.copyOf(classes, capacity);
 	}
 	
 	/**
@@ -99,16 +216,43 @@ public class myDataset {
 	 * @return the total amount of examples
 	 */
 	public int size(){
-		return examples.size();
+		return numExamples;
 	}
 	
 	/**
-	 * It returns the example at position index
+	 * It returns the example at position index. 
+	 * The string representation is rebuilt from the columns, so use {@link #getEncodedExample(int, double[])} whenever possible
 	 * @param index the id of the example
 	 * @return an example in string format (array of attributes as string values)
 	 */
 	public String [] getExample(int index){
-		return examples.get(index);
+		String [] example = new String[numericColumns.length];
+		for (int j = 0; j < example.length; j++){
+			if (numericColumns[j] != null)
+				example[j] = Double.toString(numericColumns[j][index]);
+			else if (nominalColumns[j][index] >= 0)
+				example[j] = ((NominalVariable)dataBase.get(j)).getNominalValue(nominalColumns[j][index]);
+			else
+				example[j] = "?"; //unknown nominal value
+		}
+		return example;
+	}
+	
+	/**
+	 * It copies the "index" example into a pre-encoded row: the real value for fuzzy variables
+	 * and the nominal value index for nominal variables
+	 * @param index the id of the example
+	 * @param row the array where the example is stored (length equal to the number of variables)
+	 * @return the input row (for convenience)
+	 */
+	public double [] getEncodedExample(int index, double [] row){
+		for (int j = 0; j < row.length; j++){
+			if (numericColumns[j] != null)
+				row[j] = numericColumns[j][index];
+			else
+				row[j] = nominalColumns[j][index];
+		}
+		return row;
 	}
 	
 	/**
@@ -117,16 +261,26 @@ public class myDataset {
 	 * @return a byte value for the class label
 	 */
 	public byte getClass(int index){
-		return classes.get(index);
+		return classes[index];
 	}
 	
+	/**
+	 * It returns the number of examples of each class
+	 * @return the number of examples of each class
+	 */
+	public long [] getClassNumExamples(){
+		long [] counts = new long[dataBase.getNumClasses()];
+		for (int i = 0; i < numExamples; i++)
+			counts[classes[i]]++;
+		return counts;
+	}
+
 	/**
 	 * It returns the number of attributes
 	 * @return the number of input variables
 	 */
 	public int getNumberVariables(){
-		return examples.get(0).length;
+		return numericColumns.length;
 	}
 
 }
-
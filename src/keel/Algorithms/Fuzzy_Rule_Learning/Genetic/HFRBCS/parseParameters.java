@@ -208,6 +208,15 @@ public class parseParameters {
         return param;
     }
 
+    /**
+     * It returns the number of parameters read from the configuration file
+     *
+     * @return the number of parameters
+     */
+    public int getNumParameters(){
+        return parameters.size();
+    }
+
     /**
      * It returns the name of the parameter specified
      *
@@ -0,0 +1,187 @@
+/***********************************************************************
+
+	This file is part of KEEL-software, the Data Mining tool for regression, 
+	classification, clustering, pattern mining and so on.
+
+	Copyright (C) 2004-2010
+	
+	F. Herrera (herrera@decsai.ugr.es)
+    L. Snchez (luciano@uniovi.es)
+    J. Alcal-Fdez (jalcala@decsai.ugr.es)
+    S. Garca (sglopez@ujaen.es)
+    A. Fernndez (alberto.fernandez@ujaen.es)
+    J. Luengo (julianlm@decsai.ugr.es)
+
+	This program is free software: you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with this program.  If not, see http://www.gnu.org/licenses/
+  
+**********************************************************************/
+
+package org.core;
+
+/**
+ * <p>Title: RandomStream</p>
+ *
+ * <p>Description: Instance-based random number generator (Mersenne Twister) with the same methods as
+ * Randomize. A stream can be split into independent streams, whose seeds only depend on the seed of the
+ * stream and the identifier of the new stream (not on the numbers drawn), so each thread, island or batch of
+ * work can have its own reproducible generator. A stream must not be shared among threads.</p>
+ *
+ * @version 1.0
+ */
+public class RandomStream {
+	private MTwister generador;
+	private long[] key; //seed of the stream (identifiers of the splits are appended)
+
+	/**
+	 * Creates a stream with the default seed of the Mersenne Twister (5489)
+	 */
+	public RandomStream () {
+		this(5489L);
+	}
+
+	/**
+	 * Creates a stream with a given seed (the same sequence as Randomize.setSeed(seed))
+	 * @param seed the seed
+	 */
+	public RandomStream (long seed) {
+		generador = new MTwister(seed);
+		key = new long[]{seed & 0xffffffffL, seed >>> 32};
+	}
+
+	/**
+	 * Creates a stream from a key
+	 * @param key the key (32-bit values)
+	 */
+	private RandomStream (long[] key) {
+		generador = new MTwister(key);
+		this.key = key;
+	}
+
+	/**
+	 * Creates a new independent stream derived from the seed of this stream
+	 * @param streamId identifier of the new stream (different identifiers give different streams)
+	 * @return the new stream
+	 */
+	public RandomStream split (long streamId) {
+		long[] newKey = new long[key.length + 2];
+		System.arraycopy(key, 0, newKey, 0, key.length);
+		newKey[key.length] = streamId & 0xffffffffL;
+		newKey[key.length + 1] = streamId >>> 32;
+		return new RandomStream(newKey);
+	}
+
+	/**
+	 * It returns the state of the stream (for checkpoints)
+	 * @return the state of the generator followed by the key of the stream
+	 */
+	public long[] getState () {
+		long[] mtState = generador.getState();
+		long[] state = new long[mtState.length + key.length];
+		System.arraycopy(mtState, 0, state, 0, mtState.length);
+		System.arraycopy(key, 0, state, mtState.length, key.length);
+		return state;
+	}
+
+	/**
+	 * It restores the state of the stream
+	 * @param state a state obtained with getState
+	 */
+	public void setState (long[] state) {
+		int mtLength = generador.getState().length;
+		long[] mtState = new long[mtLength];
+		System.arraycopy(state, 0, mtState, 0, mtLength);
+		generador.setState(mtState);
+		key = new long[state.length - mtLength];
+		System.arraycopy(state, mtLength, key, 0, key.length);
+	}
+
+	/** Rand computes a psuedo-random float value between 0 and 1, excluding 1 
+	 * @return A uniform-distributed real value in [0,1) 
+	 */
+	public double Rand () {
+		return (generador.genrand_res53());
+	}
+	/** RandOpen computes a psuedo-random float value between 0 and 1, excluding 0 and 1  
+	 * @return A uniform-distributed real value in (0,1) 
+	 */
+	public double RandOpen () {
+		return (generador.genrand_real3());
+	}
+	/** RandClosed computes a psuedo-random float value between 0 and 1 inclusive  
+	 * @return A uniform-distributed real value in [0,1] 
+	 */
+	public double RandClosed () {
+		return (generador.genrand_real1());
+	}
+	/** RandGaussian generates a standardized gaussian random number  
+	 * @return A normal-distributed real value with mean 0 and standard deviation equal to 1 
+	 */
+	public double RandGaussian () {
+		return (generador.genrand_gaussian());
+	}
+
+	/** Randint gives an integer value between low and high, excluding high
+	 * @param low lower bound of the interval
+	 * @param high upper bound of the interval
+	 * @return A uniform-distributed integer value in [low,high)
+	 */
+	public int Randint (int low, int high) {
+		return ((int) (low + (high - low) * generador.genrand_res53()));
+	}
+	/** RandintOpen gives an integer value between low and high, excluding low and high
+	 * @param low lower bound of the interval
+	 * @param high upper bound of the interval
+	 * @return A uniform-distributed integer value in (low,high)
+	 */
+	public int RandintOpen (int low, int high) {
+		//we use low+1, to avoid that "low" could appear, since genrand_res53()
+		//draws a real value in [0,1)
+		return ((int) ((low+1) + (high - (low+1)) * generador.genrand_res53()));
+	}
+	/** RandintClosed gives an integer value between low and high inclusive
+	 * @param low lower bound of the interval
+	 * @param high upper bound of the interval
+	 * @return A uniform-distributed integer value in [low,high]
+	 */
+	public int RandintClosed (int low, int high) {
+		//since genrand_res53() generates a double in [0,1), we increment
+		//high by one, so "high" can appear with same probability as the rest of
+		//numbers in the interval
+		return ((int) (low + ((high+1) - low) * generador.genrand_res53()));
+	}
+	/** Randdouble gives an double value between low and high, excluding high
+	 * @param low lower bound of the interval
+	 * @param high upper bound of the interval
+	 * @return A uniform-distributed real value in [low,high)
+	 */
+	public double Randdouble (double low, double high) {
+		return (low + (high-low) * generador.genrand_res53());
+	}
+	/** RanddoubleOpen gives an double value between low and high, excluding low and high
+	 * @param low lower bound of the interval
+	 * @param high upper bound of the interval
+	 * @return A uniform-distributed real value in (low,high)
+	 */
+	public double RanddoubleOpen (double low, double high) {
+		return (low + (high-low) * generador.genrand_real3());
+	}
+	/** RanddoubleClosed gives an double value between low and high inclusive
+	 * @param low lower bound of the interval
+	 * @param high upper bound of the interval
+	 * @return A uniform-distributed real value in [low,high]
+	 */
+	public double RanddoubleClosed (double low, double high) {
+		return (low + (high-low) * generador.genrand_real1());
+	}
+}
@@ -32,34 +32,41 @@ import java.util.*;
 
 public class Randomize {
 	private static long Seed;
-	private static MTwister generador = new MTwister();
+	private static RandomStream generador = new RandomStream();
 	public static void setSeed (long semilla) {
 		Seed = semilla;
-		generador.init_genrand(Seed);
+		generador = new RandomStream(Seed);
+	}
+	/** getStream returns the global random stream (it must not be shared among threads: use split to
+	 * obtain independent streams for parallel work)
+	 * @return The random stream used by the static methods
+	 */
+	public static RandomStream getStream () {
+		return generador;
 	}
 	/** Rand computes a psuedo-random float value between 0 and 1, excluding 1 
 	 * @return A uniform-distributed real value in [0,1) 
 	 */
 	public static double Rand () {
-		return (generador.genrand_res53());
+		return (generador.Rand());
 	}
 	/** RandOpen computes a psuedo-random float value between 0 and 1, excluding 0 and 1  
 	 * @return A uniform-distributed real value in (0,1)
 	 */
 	public static double RandOpen () {
-		return (generador.genrand_real3());
+		return (generador.RandOpen());
 	}
 	/** RandClosed computes a psuedo-random float value between 0 and 1 inclusive  
 	 * @return A uniform-distributed real value in [0,1]
 	 */
 	public static double RandClosed () {
-		return (generador.genrand_real1());
+		return (generador.RandClosed());
 	}
 	/** RandGaussian generates a standardized gaussian random number  
 	 * @return A normal-distributed real value with mean 0 and standard deviation equal to 1
 	 */
 	public static double RandGaussian () {
-		return (generador.genrand_gaussian());
+		return (generador.RandGaussian());
 	}
 
 	/** Randint gives an integer value between low and high, excluding high
@@ -68,7 +75,7 @@ public class Randomize {
 	 * @return A uniform-distributed integer value in [low,high)
 	 */
 	public static int Randint (int low, int high) {
-		return ((int) (low + (high - low) * generador.genrand_res53()));
+		return (generador.Randint(low, high));
 	}
 	/** RandintOpen gives an integer value between low and high, excluding 0 and 1
 	 * @param low Lower bound (NOT included)
@@ -76,9 +83,7 @@ public class Randomize {
 	 * @return A uniform-distributed integer value in (low,high)
 	 */
 	public static int RandintOpen (int low, int high) {
-		//we use low+1, to avoid that "low" could appear, since genrand_res53()
-		//draws a real value in [0,1)
-		return ((int) ((low+1) + (high - (low+1)) * generador.genrand_res53()));
+		return (generador.RandintOpen(low, high));
 	}
 	/** RandintClosed gives an integer value between low and high inclusive
 	 * @param low Lower bound (included)
@@ -86,10 +91,7 @@ public class Randomize {
 	 * @return A uniform-distributed integer value in [low,high]
 	 */
 	public static int RandintClosed (int low, int high) {
-		//since genrand_res53() generates a double in [0,1), we increment
-		//high by one, so "high" can appear with same probability as the rest of
-		//numbers in the interval
-		return ((int) (low + ((high+1) - low) * generador.genrand_res53()));
+		return (generador.RandintClosed(low, high));
 	}
 	/** Randdouble gives an double value between low and high, excluding high
 	 * @param low Lower bound (included)
@@ -97,7 +99,7 @@ public class Randomize {
 	 * @return A uniform-distributed real value in [low,high)
 	 */
 	public static double Randdouble (double low, double high) {
-		return (low + (high-low) * generador.genrand_res53());
+		return (generador.Randdouble(low, high));
 	}
 	/** RanddoubleOpen gives an double value between low and high, excluding low and high
 	 * @param low Lower bound (NOT included)
@@ -105,7 +107,7 @@ public class Randomize {
 	 * @return A uniform-distributed real value in (low,high)
 	 */
 	public static double RanddoubleOpen (double low, double high) {
-		return (low + (high-low) * generador.genrand_real3());
+		return (generador.RanddoubleOpen(low, high));
 	}
 	/** RanddoubleClosed gives an double value between low and high inclusive
 	 * @param low Lower bound (included)
@@ -113,7 +115,7 @@ public class Randomize {
 	 * @return A uniform-distributed real value in [low,high]
 	 */
 	public static double RanddoubleClosed (double low, double high) {
-		return (low + (high-low) * generador.genrand_real1());
+		return (generador.RanddoubleClosed(low, high));
 	}
 }
 